@@ -0,0 +1,164 @@
+package bufmgr;
+
+import global.GlobalConst;
+
+import java.util.Arrays;
+
+/**
+ * Adaptive Replacement Cache (Megiddo and Modha).  Resident pages are split
+ * between T1, pages referenced once recently, and T2, pages referenced at
+ * least twice.  Ghost lists B1 and B2 remember pages recently evicted from
+ * each.  A miss on a page in B1 grows the target size p of T1, a miss on a
+ * page in B2 shrinks it, so the split between recency and frequency follows
+ * the workload.
+ *
+ * The buffer manager asks for a victim before it reports the page being
+ * loaded, so p is adapted when the page is pinned rather than before the
+ * victim is chosen.  Pinned frames stay in their list and are skipped when
+ * looking for a victim.
+ */
+public class ARC implements Replacer, GlobalConst {
+
+    private int c;
+    private int p;
+
+    private final FrameList t1;
+    private final FrameList t2;
+    private final GhostList b1;
+    private final GhostList b2;
+
+    private int[] frame_pid;
+    private boolean[] pinned;
+
+    public ARC(int numframes) {
+        c = numframes;
+        t1 = new FrameList(numframes);
+        t2 = new FrameList(numframes);
+        b1 = new GhostList(numframes);
+        b2 = new GhostList(numframes);
+        frame_pid = new int[numframes];
+        pinned = new boolean[numframes];
+    }
+
+    public synchronized void pin(int frame, int pid, boolean loaded) {
+        pinned[frame] = true;
+        if (!loaded) {
+            // a hit in T1 or T2 moves the page to the MRU end of T2
+            if (!t1.remove(frame)) {
+                t2.remove(frame);
+            }
+            t2.addLast(frame);
+            return;
+        }
+
+        frame_pid[frame] = pid;
+        if (b1.contains(pid)) {
+            p = Math.min(c, p + Math.max(b2.size() / b1.size(), 1));
+            b1.remove(pid);
+            t2.addLast(frame);
+        } else if (b2.contains(pid)) {
+            p = Math.max(0, p - Math.max(b1.size() / b2.size(), 1));
+            b2.remove(pid);
+            t2.addLast(frame);
+        } else {
+            t1.addLast(frame);
+        }
+
+        trimGhosts();
+    }
+
+    /**
+     * Keeps the directory within c pages of recency and 2c pages in total.
+     */
+    private void trimGhosts() {
+        while (t1.size() + b1.size() > c && b1.size() > 0) {
+            b1.removeOldest();
+        }
+        while (t1.size() + t2.size() + b1.size() + b2.size() > 2 * c && b2.size() > 0) {
+            b2.removeOldest();
+        }
+    }
+
+    public synchronized void unpin(int frame) {
+        pinned[frame] = false;
+    }
+
+    public synchronized void free(int frame) {
+        t1.remove(frame);
+        t2.remove(frame);
+        frame_pid[frame] = INVALID_PAGEID;
+        pinned[frame] = false;
+    }
+
+    public synchronized void restore(int frame, int pid) {
+        if (frame_pid[frame] != pid || t1.contains(frame) || t2.contains(frame)) {
+            return;
+        }
+        if (b1.remove(pid)) {
+            t1.addLast(frame);
+        } else {
+            b2.remove(pid);
+            t2.addLast(frame);
+        }
+    }
+
+    public synchronized void resize(int numframes) {
+        c = numframes;
+        p = Math.min(p, c);
+        t1.resize(numframes);
+        t2.resize(numframes);
+        b1.resize(numframes);
+        b2.resize(numframes);
+        frame_pid = Arrays.copyOf(frame_pid, numframes);
+        pinned = Arrays.copyOf(pinned, numframes);
+        trimGhosts();
+    }
+
+    public synchronized int pickVictim(int pid) {
+        boolean from_t1 = t1.size() > 0
+            && (t1.size() > p || (t1.size() == p && b2.contains(pid)));
+        int frame = firstUnpinned(from_t1 ? t1 : t2);
+        if (frame == FrameList.NONE) {
+            frame = firstUnpinned(from_t1 ? t2 : t1);
+        }
+        if (frame == FrameList.NONE) {
+            throw new IllegalStateException("All frames are pinned");
+        }
+        if (t1.remove(frame)) {
+            b1.add(frame_pid[frame]);
+        } else {
+            t2.remove(frame);
+            b2.add(frame_pid[frame]);
+        }
+        return frame;
+    }
+
+    /**
+     * Rates the frames of T1 from least to most recently used, then those
+     * of T2 likewise.
+     */
+    public synchronized int[] getHotness() {
+        int[] hot = new int[pinned.length];
+        t2.rank(hot, t1.rank(hot, 0));
+        return hot;
+    }
+
+    /**
+     * Gets the least recently used unpinned frame in the list, or NONE.
+     */
+    private int firstUnpinned(FrameList list) {
+        int frame = list.first();
+        while (frame != FrameList.NONE && pinned[frame]) {
+            frame = list.next(frame);
+        }
+        return frame;
+    }
+
+    /**
+     * Gets the current target size of T1.
+     */
+    public synchronized int getTarget() {
+        return p;
+    }
+
+} // public class ARC implements Replacer, GlobalConst
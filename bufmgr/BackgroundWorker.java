@@ -0,0 +1,70 @@
+package bufmgr;
+
+/**
+ * Daemon thread of the buffer manager that runs until it is shut down,
+ * e.g. the page cleaner or the checkpointer.  Subclasses check isRunning
+ * between units of work and pause between rounds; shutdown wakes a pausing
+ * worker and waits for the unit of work in progress to finish, so that
+ * the worker never leaves a page half written or a frame pinned.
+ */
+abstract class BackgroundWorker extends Thread {
+
+    private final Object pause_latch = new Object();
+    private volatile boolean running = true;
+
+    /**
+     * Constructs a daemon worker with the given thread name; call start to
+     * run it.
+     */
+    BackgroundWorker(String name) {
+        super(name);
+        setDaemon(true);
+    }
+
+    /**
+     * Returns false once shutdown has been called.
+     */
+    protected boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Waits for the given time, or until shutdown is called.  An interrupt
+     * stops the worker as shutdown does.
+     */
+    protected void pause(long millis) {
+        synchronized (pause_latch) {
+            if (running) {
+                try {
+                    pause_latch.wait(millis);
+                } catch (InterruptedException exc) {
+                    running = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops the worker and waits until it has finished its current unit of
+     * work.  The caller's interrupt status is kept, but does not cut the
+     * wait short.
+     */
+    void shutdown() {
+        synchronized (pause_latch) {
+            running = false;
+            pause_latch.notifyAll();
+        }
+        boolean interrupted = false;
+        while (isAlive()) {
+            try {
+                join();
+            } catch (InterruptedException exc) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+} // abstract class BackgroundWorker extends Thread
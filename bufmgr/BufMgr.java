@@ -3,11 +3,16 @@ package bufmgr;
 import global.*;
 //import diskmgr.*;
 
-import javax.xml.crypto.dsig.keyinfo.KeyValue;
-import java.awt.*;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+import javax.management.JMException;
+import javax.management.ObjectName;
 
 /**
  * Minibase Buffer Manager
@@ -23,33 +28,333 @@ import java.util.Map;
  * 
  * The buffer manager is used by access methods, heap files, and
  * relational operators.
+ *
+ * All operations are thread-safe.  The page table is split into latched
+ * stripes; a hit latches only the stripe of its page and bumps an atomic
+ * pin count, so pins of different pages proceed in parallel.  A miss keeps
+ * the stripe latched while the page is read, so concurrent pins of the same
+ * page wait for that read instead of loading the page twice.
+ *
+ * Pinning a page keeps it in its frame but does not stop other threads from
+ * changing it.  Threads that share a page latch its contents while they use
+ * them, either through the pinPage and unpinPage variants that take a latch
+ * mode or through latchPage and unlatchPage.  Any number of threads may hold
+ * the shared latch of a page at once; the exclusive latch excludes all
+ * others.  Latches are not reentrant, and a page must stay pinned while it is
+ * latched.
+ *
+ * pinGuarded pins (and optionally latches) a page and returns a PageGuard,
+ * which releases it when closed.  Used with try-with-resources, it cannot
+ * leak a pin, and since it remembers the page's frame, unpinning through it
+ * skips the page table lookup.
+ *
+ * Pages that are read far more often than written can also be read without
+ * pinning them at all, see readOptimistic: the reader checks afterwards, as
+ * with a seqlock, that no writer latched the page and that it was not
+ * evicted meanwhile, and reads again if either happened.
+ *
+ * The frames are normally separate pages on the heap.  A pool built off-heap
+ * carves all of them out of a few large direct buffers instead, so the
+ * frames take no room on the heap however large the pool; the disk manager
+ * copies them to and from the file through a small staging buffer of its
+ * own.  Pages pinned in such a pool have no byte array and must be used
+ * through their accessors.
+ *
+ * An optional background cleaner writes dirty unpinned pages ahead of the
+ * replacement policy, so that a miss rarely has to write its victim before
+ * it can read the new page.
+ *
+ * The pool can be grown or shrunk while it is in use, see resize.
+ *
+ * A pin that finds every frame pinned normally fails at once.  With a pin
+ * timeout set, it waits instead until another thread releases a frame, so
+ * that a short burst of pins is absorbed rather than turned into errors.
+ *
+ * Read-ahead can also be turned on.  Pins that read pages in ascending
+ * order are then recognized, and the pages after them are read into free or
+ * clean frames by a background thread before they are asked for.
+ *
+ * Pages evicted from the pool can be kept compressed in memory, see
+ * setCompressedCache, so that a miss on one of them costs a decompression
+ * rather than a disk read.
+ *
+ * Hits, misses, evictions and the number of resident, dirty and pinned
+ * frames are kept as they change, so reading them is cheap enough to poll;
+ * see getMetrics, snapshot and registerMBean.
  */
 public class BufMgr implements GlobalConst {
 
-    protected Page buffer_pool[];
-    protected FrameDesc frametab[];
+    /** Replacement policy used when none is given. */
+    public static final String DEFAULT_POLICY = "Clock";
 
-    // page_mapping will map a PageID.pid to the frametab and buffer_pool index
-    protected HashMap<Integer, Integer> page_mapping;
+    /** Victims a prefetch looks at before giving up on finding a clean one. */
+    private static final int PREFETCH_VICTIM_TRIES = 8;
+
+    /** Most pages flushAllFrames writes with one disk request. */
+    private static final int MAX_FLUSH_RUN = 64;
+
+    /** Most pages read with one disk request, and so latched at a time. */
+    private static final int MAX_LOAD_RUN = 64;
+
+    /** Optimistic attempts readOptimistic makes before it pins the page. */
+    private static final int OPTIMISTIC_TRIES = 3;
+
+    /** Fills the frame with zeros rather than reading it; used by newPage. */
+    private static final int PIN_ZERO = -1;
+
+    /** Most frames carved out of one direct buffer, which is limited to 2GB. */
+    private static final int FRAMES_PER_ARENA = Integer.MAX_VALUE / PAGE_SIZE;
+
+    // both are replaced, never changed, when the pool is resized, so a frame
+    // keeps its page and state for as long as it is in the pool
+    protected volatile Page buffer_pool[];
+    protected volatile FrameTable frametab;
+
+    // whether the frames are carved from direct buffers outside the heap
+    private final boolean off_heap;
+
+    // page_mapping will map a PageID.pid to the frametab and buffer_pool index;
+    // the reverse direction is the page number kept in the frame table.
+    // A page's frame is only loaded, pinned or evicted under its stripe latch
+    protected StripedPageTable page_mapping;
+
+    // stack of frames that hold no page, so a miss never scans frametab; it
+    // is only replaced while every stripe is latched
+    private final Object free_latch = new Object();
+    private int free_frames[];
+    private int num_free;
+
+    private Replacer replace;
+
+    // how long a pin waits for a frame when all are pinned; 0 fails at once
+    private volatile long pin_timeout_nanos;
+
+    // pins waiting for a frame park on frame_released, which is signalled
+    // whenever a frame is released while any wait; releases counts the
+    // signals, so that one sent between a failed search and the wait is
+    // not missed.  Not a monitor, so waiting virtual threads are unmounted
+    private final ReentrantLock frame_latch = new ReentrantLock();
+    private final Condition frame_released = frame_latch.newCondition();
+    private long releases;
+
+    // flushes wait on write_done for the writes of other threads that were
+    // in progress when they listed the dirty pages; write_waiters counts
+    // them, and is only changed under write_latch, so that writes signal
+    // only while any wait
+    private final ReentrantLock write_latch = new ReentrantLock();
+    private final Condition write_done = write_latch.newCondition();
+    private volatile int write_waiters;
+
+    // counters and gauges, also read by the cleaner to find the dirty frames
+    private final BufferPoolMetrics metrics;
+
+    // name the metrics are registered under with the platform MBean server
+    private ObjectName mbean_name;
+
+    private PageCleaner cleaner;
+
+    private volatile ReadAhead readahead;
+
+    // pages evicted from the pool, compressed, or null if not enabled
+    private volatile CompressedCache compressed;
 
-    private Clock replace;
     /**
-     * Constructs a buffer manager by initializing member data.
+     * Constructs a buffer manager that uses the Clock replacement policy.
      *
      * @param numframes number of frames in the buffer pool
      */
     public BufMgr(int numframes) {
+        this(numframes, DEFAULT_POLICY);
+    } // public BufMgr(int numframes)
+
+    /**
+     * Constructs a buffer manager by initializing member data.
+     *
+     * @param numframes         number of frames in the buffer pool
+     * @param replacementPolicy name of the replacement policy: "Clock",
+     *                          "LRU", "LRU-K", "2Q" or "ARC"
+     * @throws IllegalArgumentException if the policy name is unknown
+     */
+    public BufMgr(int numframes, String replacementPolicy) {
+        this(numframes, replacementPolicy, false);
+    } // public BufMgr(int numframes, String replacementPolicy)
+
+    /**
+     * Constructs a buffer manager by initializing member data.
+     *
+     * @param numframes         number of frames in the buffer pool
+     * @param replacementPolicy name of the replacement policy: "Clock",
+     *                          "LRU", "LRU-K", "2Q" or "ARC"
+     * @param offHeap           true to hold the frames in direct buffers
+     *                          outside the Java heap
+     * @throws IllegalArgumentException if the policy name is unknown
+     */
+    public BufMgr(int numframes, String replacementPolicy, boolean offHeap) {
 
+        off_heap = offHeap;
         buffer_pool = new Page[numframes];
-        frametab = new FrameDesc[numframes];
-        page_mapping = new HashMap<>();
-        replace = new Clock(this);
-        
+        frametab = new FrameTable(numframes);
+        page_mapping = new StripedPageTable(numframes);
+        replace = createReplacer(replacementPolicy, numframes);
+        metrics = new BufferPoolMetrics(numframes);
+
+        allocatePages(buffer_pool, 0);
+        free_frames = new int[numframes];
         for (int i = 0; i < numframes; i++) {
-            buffer_pool[i] = new Page();
-            frametab[i] = new FrameDesc();
+            // push in reverse so frame 0 is handed out first
+            free_frames[num_free++] = numframes - 1 - i;
         }
-    } // public BufMgr(int numframes)
+    } // public BufMgr(int numframes, String replacementPolicy, boolean offHeap)
+
+    /**
+     * Makes the pages of the frames from the given one to the end of the
+     * array.  An off-heap pool carves them out of direct buffers, each as
+     * large as possible.  Every page views its slot of the buffer and keeps
+     * the buffer alive, so its memory is released once the pool has dropped
+     * all of its frames.
+     */
+    private void allocatePages(Page[] pages, int from) {
+        for (int first = from; first < pages.length; first += FRAMES_PER_ARENA) {
+            int frames = Math.min(FRAMES_PER_ARENA, pages.length - first);
+            ByteBuffer arena = off_heap ? ByteBuffer.allocateDirect(frames * PAGE_SIZE) : null;
+            for (int i = 0; i < frames; i++) {
+                pages[first + i] = off_heap ? new Page(arena.slice(i * PAGE_SIZE, PAGE_SIZE))
+                                            : new Page();
+            }
+        }
+    }
+
+    /**
+     * Returns true if the frames are held outside the Java heap.
+     */
+    public boolean isOffHeap() {
+        return off_heap;
+    }
+
+    /**
+     * Grows or shrinks the buffer pool to the given number of frames while
+     * it is in use.  New frames start out empty.  Shrinking drops the frames
+     * with the highest numbers, writing their pages first if dirty.  Pinned
+     * pages are never dropped: if one of those frames holds a pinned page,
+     * the pool only shrinks down to that frame, and the call can be repeated
+     * once the page is unpinned.
+     *
+     * Pins, unpins and evictions wait while the frames are swapped.  When
+     * shrinking, the dirty pages are written before that, so the wait is
+     * short unless they are changed again meanwhile.
+     *
+     * @param numframes number of frames wanted
+     * @return number of frames in the pool afterwards
+     * @throws IllegalArgumentException if numframes is less than 1
+     */
+    public synchronized int resize(int numframes) {
+        if (numframes < 1) {
+            throw new IllegalArgumentException("Invalid number of frames");
+        }
+        int old = frametab.size();
+        if (numframes > old) {
+            grow(numframes);
+        } else if (numframes < old) {
+            for (int index = numframes; index < old; index++) {
+                cleanFrame(index);
+            }
+            shrink(numframes);
+        }
+        return frametab.size();
+    }
+
+    /**
+     * Adds empty frames to the pool.  They are allocated before any latch is
+     * taken; only the swap of the frames and the policy stops the pool.
+     */
+    private void grow(int numframes) {
+        int old = frametab.size();
+        Page[] pages = Arrays.copyOf(buffer_pool, numframes);
+        FrameTable frames = frametab.resize(numframes);
+        allocatePages(pages, old);
+
+        page_mapping.lockAll();
+        try {
+            replace.resize(numframes);
+            buffer_pool = pages;
+            frametab = frames;
+            synchronized (free_latch) {
+                free_frames = Arrays.copyOf(free_frames, numframes);
+                for (int i = numframes - 1; i >= old; i--) {
+                    free_frames[num_free++] = i;
+                }
+            }
+            metrics.setNumFrames(numframes);
+        } finally {
+            page_mapping.unlockAll();
+        }
+        frameReleased();
+    }
+
+    /**
+     * Drops the frames from numframes up, evicting their pages, but none
+     * below the highest frame holding a pinned page.
+     */
+    private void shrink(int numframes) {
+        page_mapping.lockAll();
+        try {
+            int old = frametab.size();
+            int keep = numframes;
+            for (int index = old - 1; index >= numframes; index--) {
+                if (frametab.getPin_count(index) != 0) {
+                    keep = index + 1;
+                    break;
+                }
+            }
+            // no page can be pinned or latched now, and these are unpinned,
+            // so writing them never waits for a content latch
+            for (int index = keep; index < old; index++) {
+                if (frametab.getPage_number(index) != INVALID_PAGEID) {
+                    removeMappingAndFlush(index);
+                    replace.free(index);
+                }
+            }
+            synchronized (free_latch) {
+                int n = 0;
+                for (int i = 0; i < num_free; i++) {
+                    if (free_frames[i] < keep) {
+                        free_frames[n++] = free_frames[i];
+                    }
+                }
+                num_free = n;
+                free_frames = Arrays.copyOf(free_frames, keep);
+            }
+            replace.resize(keep);
+            buffer_pool = Arrays.copyOf(buffer_pool, keep);
+            frametab = frametab.resize(keep);
+            metrics.setNumFrames(keep);
+        } finally {
+            page_mapping.unlockAll();
+        }
+    }
+
+    /**
+     * Creates the replacement policy with the given name.
+     *
+     * @throws IllegalArgumentException if the policy name is unknown
+     */
+    private static Replacer createReplacer(String name, int numframes) {
+        switch (name.toUpperCase()) {
+            case "CLOCK":
+                return new Clock(numframes);
+            case "LRU":
+                return new LRU(numframes);
+            case "LRU-K":
+            case "LRUK":
+                return new LRUK(numframes);
+            case "2Q":
+                return new TwoQ(numframes);
+            case "ARC":
+                return new ARC(numframes);
+            default:
+                throw new IllegalArgumentException("Unknown replacement policy: " + name);
+        }
+    }
 
     /**
      * The result of this call is that disk page number pageno should reside in
@@ -62,7 +367,7 @@ public class BufMgr implements GlobalConst {
      * 	uses the replacement policy to select a frame to replace
      * 	writes the frame's contents to disk if valid and dirty
      * 	if (contents == PIN_DISKIO)
-     * 		read disk page pageno into chosen frame
+     * 		read disk page pageno directly into chosen frame
      * 	else (contents == PIN_MEMCPY)
      * 		copy mempage into chosen frame
      * 	[omitted from the above is maintenance of the frame table and hash map]
@@ -81,241 +386,1638 @@ public class BufMgr implements GlobalConst {
      * @throws IllegalStateException    if all pages are pinned (i.e. pool is full)
      */
     public void pinPage(PageId pageno, Page mempage, int contents) {
+        pinPage(pageno, mempage, contents, (BufferRing) null);
+    }
 
-        if (page_mapping.containsKey(pageno.pid)) {
-            int index = page_mapping.get(pageno.pid);
-            mempage.setPage(buffer_pool[index]);
-            frametab[index].increment_pin_count(); 
-        } else {
-            int temp = this.findInvalidFrame();
-            int index = -1;
-            if (page_mapping.size() == frametab.length) {
+    /**
+     * Pins a page as pinPage does, except that a miss loads the page into
+     * one of the frames of the given ring, reusing the frame that ring
+     * loaded longest ago once the ring is full.  A large scan or bulk load
+     * that pins its pages through a ring therefore only ever takes as many
+     * frames from the pool as the ring has slots, and leaves the rest of the
+     * pool to the pages other work keeps using.  Pages already in the pool
+     * are pinned where they are, and ring pins are not read ahead.
+     *
+     * @param pageno   identifies the page to pin
+     * @param mempage  An output parameter referring to the chosen frame.
+     * @param contents Describes how the contents of the frame are determined.
+     * @param ring     the frames to load into, or null to use the whole pool
+     * @throws IllegalArgumentException if PIN_MEMCPY and the page is pinned.
+     * @throws IllegalStateException    if all pages are pinned (i.e. pool is full)
+     *                                  and stay so for the pin timeout
+     */
+    public void pinPage(PageId pageno, Page mempage, int contents, BufferRing ring) {
+        if (contents == PIN_ZERO) {
+            throw new IllegalArgumentException("contents argument did not contain a valid value");
+        }
+        pin(pageno, mempage, contents, ring);
+    }
+
+    /**
+     * Pins a page as pinPage does, waiting for a frame if need be; contents
+     * may also be PIN_ZERO.
+     *
+     * @return the frame of the page
+     */
+    private int pin(PageId pageno, Page mempage, int contents, BufferRing ring) {
+        try {
+            return pinOnce(pageno, mempage, contents, ring);
+        } catch (IllegalStateException exc) {
+            if (pin_timeout_nanos == 0) {
+                throw exc;
+            }
+            return waitAndPin(pageno, mempage, contents, ring, exc);
+        }
+    }
+
+    /**
+     * Retries a pin that found every frame pinned each time a frame is
+     * released, until it succeeds or the pin timeout has passed.  The stripe
+     * latch of the page is not held while waiting.  An interrupt ends the
+     * wait early, with the interrupt status set again.
+     *
+     * @param exhausted the exception of the first try, thrown if all fail
+     * @return the frame of the page
+     * @throws IllegalStateException if no frame was released in time
+     */
+    private int waitAndPin(PageId pageno, Page mempage, int contents, BufferRing ring,
+            IllegalStateException exhausted) {
+        long start = System.nanoTime();
+        long deadline = start + pin_timeout_nanos;
+        metrics.frame_waits.increment();
+        // once counted as waiting, every release signals; a release before
+        // that is seen by the next try
+        metrics.frame_waiters.incrementAndGet();
+        try {
+            while (true) {
+                long seen;
+                frame_latch.lock();
+                try {
+                    seen = releases;
+                } finally {
+                    frame_latch.unlock();
+                }
                 try {
-                    index = replace.pickVictim();
-                } catch (IllegalStateException exception) {
-                    throw exception;
+                    return pinOnce(pageno, mempage, contents, ring);
+                } catch (IllegalStateException exc) {
+                    exhausted = exc;
                 }
-                if (frametab[index].getDirty()) {
-                    flushPage(new PageId(index));
+                frame_latch.lock();
+                try {
+                    long remaining = deadline - System.nanoTime();
+                    while (releases == seen && remaining > 0) {
+                        remaining = frame_released.awaitNanos(remaining);
+                    }
+                    if (releases == seen) {
+                        metrics.frame_wait_timeouts.increment();
+                        throw exhausted;
+                    }
+                } catch (InterruptedException exc) {
+                    Thread.currentThread().interrupt();
+                    throw exhausted;
+                } finally {
+                    frame_latch.unlock();
                 }
-            } else {
-                index = temp;
             }
+        } finally {
+            metrics.frame_waiters.decrementAndGet();
+            metrics.frame_wait_nanos.add(System.nanoTime() - start);
+        }
+    }
 
-            switch (contents) {
-                case PIN_DISKIO:
-                    // Read the page from disk into the frame
-                    Page tempPage = new Page();
-                    Minibase.DiskManager.read_page(pageno, tempPage);
+    /**
+     * Wakes the pins waiting for a frame, if any.  Called once a frame has
+     * lost its last pin or gone back to the free stack.
+     */
+    private void frameReleased() {
+        if (metrics.frame_waiters.get() > 0) {
+            frame_latch.lock();
+            try {
+                releases++;
+                frame_released.signalAll();
+            } finally {
+                frame_latch.unlock();
+            }
+        }
+    }
 
-                    removeMappingAndFlush(index);
-                    mempage.setPage(tempPage);
-                    buffer_pool[index].setPage(tempPage);
+    /**
+     * Sets how long a pin that finds every frame pinned waits for another
+     * thread to release one before it fails.  Waiting pins hold no latch, so
+     * the releases they wait for are not held up.
+     *
+     * @param timeout_millis the longest wait, or 0 to fail at once
+     * @throws IllegalArgumentException if the timeout is negative
+     */
+    public void setPinTimeout(long timeout_millis) {
+        if (timeout_millis < 0) {
+            throw new IllegalArgumentException("Invalid pin timeout");
+        }
+        pin_timeout_nanos = TimeUnit.MILLISECONDS.toNanos(timeout_millis);
+    }
+
+    /**
+     * Gets how long a pin waits for a frame when all are pinned, in
+     * milliseconds.
+     */
+    public long getPinTimeout() {
+        return TimeUnit.NANOSECONDS.toMillis(pin_timeout_nanos);
+    }
+
+    /**
+     * Keeps the pages evicted from the pool compressed in memory, up to the
+     * given number of bytes, so that pinning one of them again decompresses
+     * it instead of reading the disk.  Only pages that are the same as on
+     * disk are kept, i.e. clean ones and dirty ones once they are written.
+     * The pages kept so far are dropped.
+     *
+     * @param max_bytes most bytes of compressed pages, or 0 for no cache
+     * @throws IllegalArgumentException if max_bytes is negative
+     */
+    public void setCompressedCache(long max_bytes) {
+        if (max_bytes < 0) {
+            throw new IllegalArgumentException("Invalid compressed cache size");
+        }
+        CompressedCache old = compressed;
+        compressed = (max_bytes > 0) ? new CompressedCache(max_bytes, metrics.compressed_bytes) : null;
+        if (old != null) {
+            old.clear();
+        }
+    }
+
+    /**
+     * Gets the most bytes of compressed pages the pool keeps, 0 if none.
+     */
+    public long getCompressedCache() {
+        CompressedCache cache = compressed;
+        return (cache != null) ? cache.getMaxBytes() : 0;
+    }
+
+    /**
+     * Makes a single attempt at pinPage.
+     *
+     * @return the frame of the page
+     */
+    private int pinOnce(PageId pageno, Page mempage, int contents, BufferRing ring) {
+
+        int pid = pageno.pid;
+        ReadAhead running = readahead;
+        if (running != null && contents == PIN_DISKIO && ring == null) {
+            running.access(pid);
+        }
+
+        ReentrantLock latch = page_mapping.latch(pid);
+        if (!page_mapping.lock(pid)) {
+            metrics.pin_waits.increment();
+        }
+        try {
+            int index = page_mapping.get(pid);
+            if (index != PageTable.INVALID_FRAME) {
+                mempage.setPage(buffer_pool[index]);
+                if (frametab.getPrefetched(index)) {
+                    frametab.setPrefetched(index, false);
+                    metrics.prefetch_hits.increment();
+                    if (running != null) {
+                        running.hit();
+                    }
+                }
+                if (contents == PIN_ZERO && frametab.getPin_count(index) == 0) {
+                    // left behind by a page deallocated without freePage
+                    zeroFrame(index);
+                }
+                pinFrame(index);
+                replace.pin(index, pid, false);
+                if (frametab.getPreloaded(index)) {
+                    // read by pinPages ahead of this pin, which is the miss
+                    frametab.setPreloaded(index, false);
+                    metrics.misses.increment();
+                } else {
+                    metrics.hits.increment();
+                }
+                return index;
+            }
 
-                    page_mapping.put(pageno.pid, index);
+            if (contents != PIN_DISKIO && contents != PIN_MEMCPY && contents != PIN_NOOP
+                    && contents != PIN_ZERO) {
+                // content argument contained an invalid value...
+                throw new IllegalArgumentException("contents argument did not contain a valid value");
+            }
+            index = (ring != null) ? ringFrame(ring, pid) : this.findInvalidFrame(pid);
 
-                    frametab[index].increment_pin_count();
-                    frametab[index].setpage_number(pageno.pid); 
-                    
+            // Every frame keeps the same data array for its whole life, and
+            // mempage is made to refer to it; a miss allocates nothing
+            CompressedCache cache = compressed;
+            switch (contents) {
+                case PIN_DISKIO:
+                    // Read the page from disk straight into the frame, unless
+                    // it is kept in the compressed cache
+                    if (cache != null && cache.take(pid, buffer_pool[index])) {
+                        metrics.compressed_hits.increment();
+                        break;
+                    }
+                    try {
+                        Minibase.DiskManager.read_page(pageno, buffer_pool[index]);
+                    } catch (IllegalArgumentException exc) {
+                        releaseUnusedFrame(index);
+                        throw exc;
+                    }
                     break;
                 case PIN_MEMCPY:
                     // copy mempage into the frame
-                    buffer_pool[index].setPage(mempage);
-
-                    removeMappingAndFlush(index);
-                    page_mapping.put(pageno.pid, index);
-
-                    frametab[index].increment_pin_count();
-                    frametab[index].setpage_number(pageno.pid); 
+                    buffer_pool[index].copyPage(mempage);
                     break;
                 case PIN_NOOP:
                     // Copy nothing into the frame - the frame contents are irrelevant
-                    
-                    PageId newPId = new PageId(pageno.pid);
-
-                    removeMappingAndFlush(index);
-                    page_mapping.put(newPId.pid, index);
-
-                    frametab[index].increment_pin_count(); 
-                    frametab[index].setpage_number(newPId.pid);
-
-                    mempage.setPage(buffer_pool[page_mapping.get(pageno.pid)]);
                     break;
-                default:
-                    // content argument contained an invalid value...
-                    throw new IllegalArgumentException("contents argument did not contain a valid value");
+                case PIN_ZERO:
+                    // new page: there is nothing on disk worth reading
+                    buffer_pool[index].clear();
+                    break;
+            }
+            if (cache != null && contents != PIN_DISKIO) {
+                // the cache only holds pages that are not resident, so that
+                // its copies cannot fall behind the disk
+                cache.remove(pid);
             }
+            mempage.setPage(buffer_pool[index]);
+
+            frametab.setpage_number(index, pid);
+            frametab.setOnDisk(index, contents == PIN_DISKIO);
+            if (contents == PIN_ZERO) {
+                markDirty(index);
+            }
+            pinFrame(index);
+            page_mapping.put(pid, index);
+            metrics.resident_frames.incrementAndGet();
+            replace.pin(index, pid, true);
+            metrics.misses.increment();
+            return index;
+        } finally {
+            latch.unlock();
         }
-        
 
-    } // public void pinPage(PageId pageno, Page page, int contents)
+    } // private int pinOnce(PageId pageno, Page mempage, int contents, BufferRing ring)
 
+    /**
+     * Writes out the page currently held by the given frame if it is dirty and
+     * drops it from page_mapping, leaving the frame empty.  The frame
+     * table holds the page number, so there is no need to search the
+     * mapping for it.  The caller holds the latch of the page.
+     */
     private void removeMappingAndFlush(int index) {
-        int pageToFlush = 0;
-        Iterator it = page_mapping.entrySet().iterator();
-        while (it.hasNext()) {
-            Map.Entry pair = (Map.Entry)it.next();
-
-            if (pair.getValue() == index){
-                pageToFlush = (Integer)pair.getKey();
-                flushPage(new PageId(pageToFlush));
-                it.remove();
+        int pid = frametab.getPage_number(index);
+        if (pid != INVALID_PAGEID) {
+            if (frametab.getPrefetched(index)) {
+                metrics.wasted_prefetches.increment();
+                ReadAhead running = readahead;
+                if (running != null) {
+                    running.wasted();
+                }
+            }
+            metrics.evictions.increment();
+            if (frametab.getDirty(index)) {
+                metrics.dirty_evictions.increment();
+                flushFrame(index, pid);
             }
+            CompressedCache cache = compressed;
+            if (cache != null && frametab.getOnDisk(index)) {
+                cache.put(pid, buffer_pool[index]);
+            }
+            page_mapping.remove(pid);
+            metrics.resident_frames.decrementAndGet();
+            frametab.reset(index);
         }
     }
 
     /**
-     * Find an invalid frame to use
+     * Find an invalid frame to use.  Frames that hold no page are kept on a
+     * stack; only when it is empty does the replacement policy pick a victim.
+     * The returned frame is empty and belongs to the caller, who must either
+     * install a page in it or hand it back with releaseUnusedFrame.
      * 
-     * @return invalid frame number, or -1 if invalid
+     * @param pid the page that will be brought into the frame
+     * @return invalid frame number, or an evicted frame if the pool is full
+     * @throws IllegalStateException if all pages are pinned
      */
-    public int findInvalidFrame() {
-        int id = -1;
-        for(int i = 0; i < frametab.length; i++) {
-            id = frametab[i].getPage_number();
-            if (id == -1) {
-                return i;
-            }
-        }
-        // No invalid frames were found, buffer is full
-        return replace.pickVictim();
-    } // public int findInvalidFrame()
-    
+    private int findInvalidFrame(int pid) {
+        return findInvalidFrame(pid, false);
+    }
+
     /**
-     * Unpins a disk page from the buffer pool, decreasing its pin count.
+     * Find an invalid frame to use, as findInvalidFrame(pid) does.  For a
+     * prefetch only a few victims are tried and dirty ones are passed over,
+     * since writing a page to make room for one that may never be used is
+     * not worth it.
      *
-     * @param pageno identifies the page to unpin
-     * @param dirty  UNPIN_DIRTY if the page was modified, UNPIN_CLEAN otherwise
-     * @throws IllegalArgumentException if the page is not in the buffer pool
-     *                                  or not pinned
+     * @param clean_only true to give up rather than write a dirty victim
+     * @return the frame, or INVALID_FRAME if clean_only and none was found
+     * @throws IllegalStateException if all pages are pinned and not clean_only
      */
-    public void unpinPage(PageId pageno, boolean dirty) {
-        if (!page_mapping.containsKey(pageno.pid) || frametab[page_mapping.get(pageno.pid)].getPin_count() == 0 ) {
-            throw new IllegalArgumentException("Page is not in the buffer pool or not pinned");
+    private int findInvalidFrame(int pid, boolean clean_only) {
+        synchronized (free_latch) {
+            if (num_free > 0) {
+                return free_frames[--num_free];
+            }
         }
-        if (dirty == UNPIN_DIRTY) {
-            try {
-            this.flushPage(pageno);
-            } catch(IllegalArgumentException e) {
-                throw e;
+        // No invalid frames were found, buffer is full.  Victims that cannot
+        // be evicted right now are only handed back to the policy once the
+        // search is over, so that it does not offer them again straight away
+        int[] skipped = null;
+        int num_skipped = 0;
+        int max_tries = clean_only ? PREFETCH_VICTIM_TRIES : 2 * frametab.size();
+        try {
+            for (int tries = 0; tries < max_tries; tries++) {
+                int victim;
+                try {
+                    victim = replace.pickVictim(pid);
+                } catch (IllegalStateException exc) {
+                    if (clean_only) {
+                        return PageTable.INVALID_FRAME;
+                    }
+                    if (num_skipped == 0) {
+                        throw exc;
+                    }
+                    restoreVictims(skipped, num_skipped);
+                    num_skipped = 0;
+                    Thread.yield();
+                    continue;
+                }
+                int vpid = frametab.getPage_number(victim);
+                if (evictFrame(victim, vpid, clean_only)) {
+                    return victim;
+                }
+                if (vpid != INVALID_PAGEID) {
+                    if (skipped == null) {
+                        skipped = new int[16];
+                    } else if (num_skipped == skipped.length) {
+                        skipped = Arrays.copyOf(skipped, 2 * num_skipped);
+                    }
+                    skipped[num_skipped++] = victim;
+                    skipped[num_skipped++] = vpid;
+                }
             }
+        } finally {
+            restoreVictims(skipped, num_skipped);
         }
-        frametab[page_mapping.get(pageno.pid)].decrement_pin_count();
-        if (frametab[page_mapping.get(pageno.pid)].getPin_count() == 0) {
-            frametab[page_mapping.get(pageno.pid)].setReference_bit(true);
+        if (clean_only) {
+            return PageTable.INVALID_FRAME;
         }
-    } // public void unpinPage(PageId pageno, boolean dirty)
+        throw new IllegalStateException("No unpinned frame could be evicted");
+    } // private int findInvalidFrame(int pid, boolean clean_only)
 
     /**
-     * Allocates a run of new disk pages and pins the first one in the buffer pool.
-     * The pin will be made using PIN_MEMCPY.  Watch out for disk page leaks.
-     *
-     * @param firstpg  input and output: holds the contents of the first allocated page
-     *                 and refers to the frame where it resides
-     * @param run_size input: number of pages to allocate
-     * @return page id of the first allocated page
-     * @throws IllegalArgumentException if firstpg is already pinned
-     * @throws IllegalStateException    if all pages are pinned (i.e. pool exceeded)
+     * Gets an empty frame for a page pinned through a ring.  The ring's next
+     * slot is reused if the page the ring loaded into it is still there and
+     * unpinned; otherwise the slot takes a new frame from the pool, e.g.
+     * while the ring fills up or after another thread pinned its page.
      */
-    public PageId newPage(Page firstpg, int run_size) {
-        findInvalidFrame();
-        PageId newPage = new PageId();
-        newPage = Minibase.DiskManager.allocate_page(run_size);
-        pinPage(newPage, firstpg, PIN_DISKIO);
+    private int ringFrame(BufferRing ring, int pid) {
+        int slot = ring.nextSlot();
+        int index = ring.getFrame(slot);
+        // the pool may have shrunk since the ring loaded the frame
+        if (index == PageTable.INVALID_FRAME || index >= frametab.size()
+                || !evictFrame(index, ring.getPage(slot), false)) {
+            index = findInvalidFrame(pid);
+        }
+        ring.setSlot(slot, index, pid);
+        return index;
+    }
 
-        return newPage;
-} // public PageId newPage(Page firstpg, int run_size)
+    /**
+     * Hands (frame, page) pairs that were picked but not evicted back to the
+     * replacement policy.
+     */
+    private void restoreVictims(int[] skipped, int num_skipped) {
+        for (int i = 0; i < num_skipped; i += 2) {
+            replace.restore(skipped[i], skipped[i + 1]);
+        }
+    }
 
     /**
-     * Deallocates a single page from disk, freeing it from the pool if needed.
+     * Evicts the page in a frame picked by the replacement policy.  Other
+     * threads may have pinned or freed the page since the policy last heard
+     * of it, so the frame is checked again under the latch of its page.  The
+     * latch is only tried: waiting for it while holding another could
+     * deadlock with a thread doing the same in the other direction.
      *
-     * @param pageno identifies the page to remove
-     * @throws IllegalArgumentException if the page is pinned
+     * @param victim     page the frame held when it was picked
+     * @param clean_only true to leave the frame alone if its page is dirty
+     * @return true if the frame is now empty and belongs to the caller
      */
-    public void freePage(PageId pageno) {
-        if (page_mapping.containsKey(pageno.pid)) {
-            int index = page_mapping.get(pageno.pid);
-            if (frametab[index].getPin_count() > 0) {
-                throw new IllegalArgumentException("Page is pinned");
-            }
-
-            // deallocate the page
-            Minibase.DiskManager.deallocate_page(pageno);
-            if (page_mapping.containsKey(pageno.pid)) {
-                frametab[page_mapping.get(pageno.pid)] = new FrameDesc();
-
-                // Remove from page_mapping
-                page_mapping.remove(pageno.pid);
-
-
+    private boolean evictFrame(int index, int victim, boolean clean_only) {
+        if (victim == INVALID_PAGEID) {
+            return false;
+        }
+        ReentrantLock latch = page_mapping.latch(victim);
+        if (!latch.tryLock()) {
+            return false;
+        }
+        try {
+            if (frametab.getPage_number(index) != victim
+                    || frametab.getPin_count(index) != 0
+                    || (clean_only && frametab.getDirty(index))) {
+                return false;
             }
+            removeMappingAndFlush(index);
+            // the frame may have been freed and loaded again since it was
+            // picked, in which case the policy still lists it
+            replace.free(index);
+            return true;
+        } finally {
+            latch.unlock();
         }
-        
-
-    } // public void freePage(PageId firstid)
+    }
 
     /**
-     * Write all valid and dirty frames to disk.
-     * Note flushing involves only writing, not unpinning or freeing
-     * or the like.
+     * Returns a frame taken by findInvalidFrame to the free stack if no page
+     * is installed in it.
      */
-    public void flushAllFrames() {
-        for (FrameDesc frame : frametab) {
-            int pageno = frame.getPage_number();
-            if (pageno != -1 && frame.getDirty()) {
-                flushPage(new PageId(pageno));
+    private void releaseUnusedFrame(int index) {
+        if (frametab.getPage_number(index) == INVALID_PAGEID) {
+            replace.free(index);
+            synchronized (free_latch) {
+                free_frames[num_free++] = index;
             }
+            frameReleased();
         }
-    } // public void flushAllFrames()
-
+    }
+    
     /**
-     * Write a page in the buffer pool to disk, if dirty.
+     * Unpins a disk page from the buffer pool, decreasing its pin count.
+     * A dirty page is not written here; it is written back when its frame is
+     * reused, or by flushPage and flushAllFrames.  Repeated updates to a hot
+     * page therefore cost a single write.
      *
+     * @param pageno identifies the page to unpin
+     * @param dirty  UNPIN_DIRTY if the page was modified, UNPIN_CLEAN otherwise
      * @throws IllegalArgumentException if the page is not in the buffer pool
+     *                                  or not pinned
      */
-    public void flushPage(PageId pageno) {
-        // Check if pageno is in the page_mapping
-        if (page_mapping.containsKey(pageno.pid)) {
-
+    public void unpinPage(PageId pageno, boolean dirty) {
+        ReentrantLock latch = page_mapping.latch(pageno.pid);
+        page_mapping.lock(pageno.pid);
+        try {
             int index = page_mapping.get(pageno.pid);
-
-            if (pageno.pid == 12) {
-                int badValue = Convert.getIntValue(0, buffer_pool[index].getData());
-                System.out.print("");
+            if (index == PageTable.INVALID_FRAME || frametab.getPin_count(index) == 0) {
+                throw new IllegalArgumentException("Page is not in the buffer pool or not pinned");
             }
+            if (dirty == UNPIN_DIRTY) {
+                markDirty(index);
+            }
+            unpinFrame(index);
+        } finally {
+            latch.unlock();
+        }
+    } // public void unpinPage(PageId pageno, boolean dirty)
 
-            // Write page to disk
-            Minibase.DiskManager.write_page(pageno, buffer_pool[index]);
-            // Set dirty bit to false
-            frametab[index].setDirty(false);
-        } else {
-            throw new IllegalArgumentException("pageno is not in the buffer pool");
+    /**
+     * Pins a page as pinPage does and returns a guard that unpins it when
+     * closed, e.g. by try-with-resources.  The guard remembers the frame of
+     * the page, so unpinning through it does not search the page table.
+     *
+     * @param pageno   identifies the page to pin
+     * @param mempage  An output parameter referring to the chosen frame.
+     * @param contents Describes how the contents of the frame are determined.
+     * @return the guard of the pinned page
+     * @throws IllegalArgumentException if PIN_MEMCPY and the page is pinned
+     * @throws IllegalStateException    if all pages are pinned (i.e. pool exceeded)
+     */
+    public PageGuard pinGuarded(PageId pageno, Page mempage, int contents) {
+        if (contents == PIN_ZERO) {
+            throw new IllegalArgumentException("contents argument did not contain a valid value");
         }
+        int index = pin(pageno, mempage, contents, null);
+        return new PageGuard(this, pageno.pid, index, mempage, null, 0);
     }
 
     /**
-     * Gets the total number of buffer frames.
-     * 
-     * @return returns number of frames
+     * Pins a page as pinGuarded does, then latches its contents; closing the
+     * guard releases the latch, then unpins the page.
+     *
+     * @param pageno    identifies the page to pin
+     * @param mempage   An output parameter referring to the chosen frame.
+     * @param contents  Describes how the contents of the frame are determined.
+     * @param exclusive LATCH_EXCLUSIVE to write the page, LATCH_SHARED to read it
+     * @return the guard of the pinned and latched page
+     * @throws IllegalArgumentException if PIN_MEMCPY and the page is pinned
+     * @throws IllegalStateException    if all pages are pinned (i.e. pool exceeded)
      */
-    public int getNumFrames() {
-        return frametab.length;
+    public PageGuard pinGuarded(PageId pageno, Page mempage, int contents, boolean exclusive) {
+        if (contents == PIN_ZERO) {
+            throw new IllegalArgumentException("contents argument did not contain a valid value");
+        }
+        int index = pin(pageno, mempage, contents, null);
+        // the page is pinned, so its frame stays put while the latch is awaited
+        StampedLock content = frametab.getContent_latch(index);
+        long stamp = (exclusive == LATCH_EXCLUSIVE) ? content.writeLock() : content.readLock();
+        return new PageGuard(this, pageno.pid, index, mempage, content, stamp);
     }
 
     /**
-     * Gets the total number of unpinned buffer frames.
-     * 
-     * @return Returns the number of unpinned frames
+     * Unpins a page pinned by pinGuarded, given its frame.
      */
-    public int getNumUnpinned() {
-
+    void unpinGuarded(int pid, int index, boolean dirty) {
+        ReentrantLock latch = page_mapping.latch(pid);
+        page_mapping.lock(pid);
+        try {
+            if (dirty == UNPIN_DIRTY) {
+                markDirty(index);
+            }
+            unpinFrame(index);
+        } finally {
+            latch.unlock();
+        }
+    }
+
+    /**
+     * Reads a page without pinning or latching it, as a seqlock reader
+     * does.  The version of the page's frame is noted, reader is run on
+     * mempage, which is made to refer to the frame, and the version is then
+     * checked again.  If the page was latched exclusive or evicted meanwhile,
+     * the result is dropped and the read is made again; after a few failed
+     * attempts, or if the page is not resident, it is pinned and latched
+     * shared instead, so reader always ends up with a consistent page.
+     *
+     * Until validated, reader may see the page half changed.  It must only
+     * read the page, must cope with values that make no sense, and may be
+     * run more than once; an exception it throws from an invalid read is
+     * ignored.  Only writers that latch the page exclusive are noticed, as
+     * for shared latches.  Reads that succeed without a pin touch no shared
+     * counter of the frame, so the replacement policy does not see them.
+     *
+     * @param pageno  identifies the page to read
+     * @param mempage refers to the frame while reader runs, not afterwards
+     * @param reader  reads the page through mempage
+     * @return the result of reader on a consistent page
+     * @throws IllegalStateException if the page has to be pinned and all
+     *                               pages are pinned
+     */
+    public <T> T readOptimistic(PageId pageno, Page mempage, Function<Page, T> reader) {
+        int pid = pageno.pid;
+        for (int tries = 0; tries < OPTIMISTIC_TRIES; tries++) {
+            // the pool may be resized meanwhile; a frame dropped since the
+            // lookup has been reset, which fails its validation
+            FrameTable frames = frametab;
+            Page[] pages = buffer_pool;
+            int index = page_mapping.find(pid);
+            if (index == PageTable.INVALID_FRAME || index >= frames.size() || index >= pages.length) {
+                break;
+            }
+            StampedLock content = frames.getContent_latch(index);
+            long stamp = content.tryOptimisticRead();
+            if (stamp == 0) {
+                // a writer has the page
+                metrics.optimistic_retries.increment();
+                Thread.onSpinWait();
+                continue;
+            }
+            if (frames.getPage_number(index) != pid) {
+                // found through a stale or torn lookup
+                break;
+            }
+            mempage.setPage(pages[index]);
+            T result;
+            try {
+                result = reader.apply(mempage);
+            } catch (RuntimeException exc) {
+                if (content.validate(stamp)) {
+                    throw exc;
+                }
+                metrics.optimistic_retries.increment();
+                continue;
+            }
+            if (content.validate(stamp)) {
+                metrics.optimistic_reads.increment();
+                return result;
+            }
+            metrics.optimistic_retries.increment();
+        }
+        try (PageGuard guard = pinGuarded(pageno, mempage, PIN_DISKIO, LATCH_SHARED)) {
+            return reader.apply(guard.getPage());
+        }
+    }
+
+    /**
+     * Pins a page as pinPage does, then latches its contents.
+     *
+     * @param pageno    identifies the page to pin
+     * @param mempage   An output parameter referring to the chosen frame.
+     * @param contents  Describes how the contents of the frame are determined.
+     * @param exclusive LATCH_EXCLUSIVE to write the page, LATCH_SHARED to read it
+     * @throws IllegalArgumentException if PIN_MEMCPY and the page is pinned
+     * @throws IllegalStateException    if all pages are pinned (i.e. pool exceeded)
+     */
+    public void pinPage(PageId pageno, Page mempage, int contents, boolean exclusive) {
+        pinPage(pageno, mempage, contents);
+        latchPage(pageno, exclusive);
+    }
+
+    /**
+     * Releases the latch taken by pinPage, then unpins the page as unpinPage
+     * does.
+     *
+     * @param pageno    identifies the page to unpin
+     * @param dirty     UNPIN_DIRTY if the page was modified, UNPIN_CLEAN otherwise
+     * @param exclusive the mode the page was latched in
+     * @throws IllegalArgumentException if the page is not pinned or not
+     *                                  latched in that mode
+     */
+    public void unpinPage(PageId pageno, boolean dirty, boolean exclusive) {
+        unlatchPage(pageno, exclusive);
+        unpinPage(pageno, dirty);
+    }
+
+    /**
+     * Latches the contents of a pinned page, waiting until no thread holds a
+     * conflicting latch.
+     *
+     * @param pageno    identifies the page to latch
+     * @param exclusive LATCH_EXCLUSIVE to write the page, LATCH_SHARED to read it
+     * @throws IllegalArgumentException if the page is not pinned
+     */
+    public void latchPage(PageId pageno, boolean exclusive) {
+        // the page is pinned, so its frame cannot change while the latch is
+        // awaited; waiting with the stripe latch held could deadlock
+        StampedLock content = frametab.getContent_latch(pinnedFrame(pageno.pid));
+        if (exclusive == LATCH_EXCLUSIVE) {
+            content.writeLock();
+        } else {
+            content.readLock();
+        }
+    }
+
+    /**
+     * Releases a latch taken by latchPage.
+     *
+     * @param pageno    identifies the page to unlatch
+     * @param exclusive the mode the page was latched in
+     * @throws IllegalArgumentException if the page is not pinned or not
+     *                                  latched in that mode
+     */
+    public void unlatchPage(PageId pageno, boolean exclusive) {
+        StampedLock content = frametab.getContent_latch(pinnedFrame(pageno.pid));
+        boolean released = (exclusive == LATCH_EXCLUSIVE) ? content.tryUnlockWrite()
+                                                           : content.tryUnlockRead();
+        if (!released) {
+            throw new IllegalArgumentException("Page is not latched in that mode");
+        }
+    }
+
+    /**
+     * Gets the frame of a pinned page.
+     *
+     * @throws IllegalArgumentException if the page is not pinned
+     */
+    private int pinnedFrame(int pid) {
+        ReentrantLock latch = page_mapping.latch(pid);
+        page_mapping.lock(pid);
+        try {
+            int index = page_mapping.get(pid);
+            if (index == PageTable.INVALID_FRAME || frametab.getPin_count(index) == 0) {
+                throw new IllegalArgumentException("Page is not in the buffer pool or not pinned");
+            }
+            return index;
+        } finally {
+            latch.unlock();
+        }
+    }
+
+    /**
+     * Allocates a run of new disk pages and pins the first one in the buffer pool.
+     * A new page has no contents worth reading, so the first page is not
+     * read from disk: its frame is filled with zeros and marked dirty, so
+     * that the zeros reach the disk even if the page is unpinned clean.
+     * Watch out for disk page leaks.
+     *
+     * @param firstpg  output: refers to the frame of the first allocated page
+     * @param run_size input: number of pages to allocate
+     * @return page id of the first allocated page
+     * @throws IllegalStateException    if all pages are pinned (i.e. pool exceeded)
+     */
+    public PageId newPage(Page firstpg, int run_size) {
+        return newPage(firstpg, run_size, false);
+    } // public PageId newPage(Page firstpg, int run_size)
+
+    /**
+     * Allocates a run of new disk pages as newPage does, optionally also
+     * installing zero-filled dirty frames for the rest of the run, so that
+     * building a file page by page pins every page without a disk read and
+     * flushing it writes the run with few disk requests.  The rest of the
+     * run is left unpinned and only takes free or clean frames; once none
+     * is to be had, the remaining pages are not cached and read as the
+     * disk holds them.
+     *
+     * @param firstpg   output: refers to the frame of the first allocated page
+     * @param run_size  input: number of pages to allocate
+     * @param cache_run true to cache the rest of the run as well
+     * @return page id of the first allocated page
+     * @throws IllegalStateException    if all pages are pinned (i.e. pool exceeded)
+     */
+    public PageId newPage(Page firstpg, int run_size, boolean cache_run) {
+        PageId firstid = Minibase.DiskManager.allocate_page(run_size);
+        try {
+            pin(firstid, firstpg, PIN_ZERO, null);
+        } catch (RuntimeException exc) {
+            // no frame could be had; give the run back rather than leak it
+            Minibase.DiskManager.deallocate_page(firstid, run_size);
+            throw exc;
+        }
+        if (cache_run) {
+            installNew(firstid.pid + 1, run_size - 1);
+        }
+        return firstid;
+    } // public PageId newPage(Page firstpg, int run_size, boolean cache_run)
+
+    /**
+     * Installs zero-filled dirty frames for new pages, unpinned, stopping at
+     * the first page for which no free or clean frame is found.
+     */
+    private void installNew(int first, int count) {
+        for (int pid = first; pid < first + count; pid++) {
+            ReentrantLock latch = page_mapping.latch(pid);
+            page_mapping.lock(pid);
+            try {
+                int index = page_mapping.get(pid);
+                if (index != PageTable.INVALID_FRAME) {
+                    if (frametab.getPin_count(index) == 0) {
+                        zeroFrame(index);
+                    }
+                    continue;
+                }
+                index = findInvalidFrame(pid, true);
+                if (index == PageTable.INVALID_FRAME) {
+                    return;
+                }
+                buffer_pool[index].clear();
+                frametab.setpage_number(index, pid);
+                markDirty(index);
+                CompressedCache cache = compressed;
+                if (cache != null) {
+                    cache.remove(pid);
+                }
+                page_mapping.put(pid, index);
+                metrics.resident_frames.incrementAndGet();
+                replace.pin(index, pid, true);
+                replace.unpin(index);
+            } finally {
+                latch.unlock();
+            }
+        }
+    }
+
+    /**
+     * Fills a frame with zeros and marks it dirty.  The caller holds the
+     * latch of its page.
+     */
+    private void zeroFrame(int index) {
+        // the frame is unpinned, so the latch is free; taking it fails any
+        // optimistic read of the old contents
+        StampedLock content = frametab.getContent_latch(index);
+        long stamp = content.writeLock();
+        try {
+            buffer_pool[index].clear();
+        } finally {
+            content.unlockWrite(stamp);
+        }
+        markDirty(index);
+    }
+
+    /**
+     * Deallocates a single page from disk, freeing it from the pool if needed.
+     *
+     * @param pageno identifies the page to remove
+     * @throws IllegalArgumentException if the page is pinned
+     */
+    public void freePage(PageId pageno) {
+        ReentrantLock latch = page_mapping.latch(pageno.pid);
+        page_mapping.lock(pageno.pid);
+        try {
+            int index = page_mapping.get(pageno.pid);
+            if (index != PageTable.INVALID_FRAME) {
+                if (frametab.getPin_count(index) > 0) {
+                    throw new IllegalArgumentException("Page is pinned");
+                }
+
+                // Remove from page_mapping and return the frame to the free
+                // stack before deallocating, since updating the space map may
+                // need a frame
+                page_mapping.remove(pageno.pid);
+                metrics.resident_frames.decrementAndGet();
+                markClean(index);
+                frametab.reset(index);
+                releaseUnusedFrame(index);
+            }
+            CompressedCache cache = compressed;
+            if (cache != null) {
+                cache.remove(pageno.pid);
+            }
+        } finally {
+            latch.unlock();
+        }
+
+        // deallocate the page
+        Minibase.DiskManager.deallocate_page(pageno);
+
+    } // public void freePage(PageId firstid)
+
+    /**
+     * Write all valid and dirty frames to disk.
+     * Note flushing involves only writing, not unpinning or freeing
+     * or the like.
+     *
+     * The dirty pages are written in page order, and each run of
+     * consecutive pages with a single disk request, so that flushing a pool
+     * full of dirty pages is mostly sequential I/O.  Writes other threads
+     * have in progress when the call starts are waited for.
+     */
+    public void flushAllFrames() {
+        long[] dirty = listDirty();
+        for (int i = 0; i < dirty.length; ) {
+            i += flushRun(dirty, i, Math.min(dirty.length - i, MAX_FLUSH_RUN));
+        }
+        awaitWrites(dirty);
+    } // public void flushAllFrames()
+
+    /**
+     * Writes all dirty pages, as flushAllFrames does, then drops every
+     * unpinned page from the pool, along with the compressed cache.  Used
+     * when pages cached here are to be cached by another pool from now on,
+     * so that no copy is left here to fall behind the disk.  Pages pinned
+     * meanwhile stay resident.
+     */
+    public void evictAllFrames() {
+        flushAllFrames();
+        for (int index = 0; index < frametab.size(); index++) {
+            int pid = frametab.getPage_number(index);
+            if (pid == INVALID_PAGEID) {
+                continue;
+            }
+            ReentrantLock latch = page_mapping.latch(pid);
+            page_mapping.lock(pid);
+            try {
+                // the pool may have shrunk or the frame been reused meanwhile
+                if (index >= frametab.size() || frametab.getPage_number(index) != pid) {
+                    continue;
+                }
+                if (frametab.getDirty(index) && frametab.getPin_count(index) == 0) {
+                    flushFrame(index, pid);
+                }
+                if (frametab.getPin_count(index) != 0) {
+                    continue;
+                }
+                page_mapping.remove(pid);
+                metrics.resident_frames.decrementAndGet();
+                markClean(index);
+                frametab.reset(index);
+                releaseUnusedFrame(index);
+            } finally {
+                latch.unlock();
+            }
+        }
+        CompressedCache cache = compressed;
+        if (cache != null) {
+            cache.clear();
+        }
+    } // public void evictAllFrames()
+
+    /**
+     * Writes every page that is dirty when the call starts, as
+     * flushAllFrames does, but a batch of pages at a time with a pause
+     * between batches, so that the writes do not crowd out the reads of
+     * other threads.  Latches are only held while a run of pages is
+     * written; pins and changes go on meanwhile, and pages changed after
+     * the start may or may not be written.  Writes other threads have in
+     * progress at the start, such as the cleaner's, are waited for before
+     * the call returns, so every page dirty at the start is then on disk.
+     *
+     * A page is only marked dirty when it is unpinned, so a change made
+     * through a pin still held at the start is not covered, even if it was
+     * made before.
+     *
+     * @param batch_pages  most pages written between two pauses
+     * @param pause_millis length of the pauses; 0 only yields the processor
+     * @throws IllegalArgumentException if the batch or pause is invalid
+     */
+    public void checkpoint(int batch_pages, long pause_millis) {
+        if (batch_pages < 1 || pause_millis < 0) {
+            throw new IllegalArgumentException("Invalid checkpoint batch");
+        }
+        long[] dirty = listDirty();
+        for (int i = 0; i < dirty.length; ) {
+            int end = Math.min(dirty.length, i + batch_pages);
+            while (i < end) {
+                i += flushRun(dirty, i, Math.min(end - i, MAX_FLUSH_RUN));
+            }
+            if (i < dirty.length) {
+                if (pause_millis == 0) {
+                    Thread.yield();
+                } else {
+                    try {
+                        Thread.sleep(pause_millis);
+                    } catch (InterruptedException exc) {
+                        // finish without pausing
+                        Thread.currentThread().interrupt();
+                        pause_millis = 0;
+                    }
+                }
+            }
+        }
+        awaitWrites(dirty);
+    }
+
+    /**
+     * Lists the dirty frames and those being written, sorted by page number.
+     * A page being written is no longer marked dirty, but is not on disk
+     * yet either.
+     *
+     * @return entries of (page number << 32 | frame index)
+     */
+    private long[] listDirty() {
+        FrameTable frames = frametab;
+        long[] dirty = new long[frames.size()];
+        int count = 0;
+        for (int index = 0; index < frames.size(); index++) {
+            int pageno = frames.getPage_number(index);
+            if (pageno != INVALID_PAGEID && (frames.getDirty(index) || frames.getWriting(index))) {
+                dirty[count++] = ((long) pageno << 32) | index;
+            }
+        }
+        dirty = Arrays.copyOf(dirty, count);
+        Arrays.sort(dirty);
+        return dirty;
+    }
+
+    /**
+     * Waits until none of the frames listed by listDirty is being written,
+     * so that the writes in progress when they were listed are on disk.
+     */
+    private void awaitWrites(long[] dirty) {
+        boolean interrupted = false;
+        write_latch.lock();
+        try {
+            write_waiters++;
+            for (long entry : dirty) {
+                // a frame dropped by resize meanwhile is not written any more
+                int index = (int) entry;
+                while (index < frametab.size() && frametab.getWriting(index)) {
+                    try {
+                        write_done.await();
+                    } catch (InterruptedException exc) {
+                        interrupted = true;
+                    }
+                }
+            }
+        } finally {
+            write_waiters--;
+            write_latch.unlock();
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Marks a frame as no longer being written, and wakes the flushes
+     * waiting for it, if any.
+     */
+    private void writeDone(int index) {
+        frametab.setWriting(index, false);
+        if (write_waiters > 0) {
+            write_latch.lock();
+            try {
+                write_done.signalAll();
+            } finally {
+                write_latch.unlock();
+            }
+        }
+    }
+
+    /**
+     * Writes a run of consecutive pages listed by listDirty with a single
+     * disk request.  The stripe latch and the shared content latch of every
+     * page are held until the run is written.  As in loadRun, only the
+     * first stripe latch is waited for; the run is cut short at a page whose
+     * stripe is busy, whose frame has changed since it was listed, which is
+     * no longer dirty, or which a writer has latched.
+     *
+     * @param from first entry of the run
+     * @param max  most pages to write
+     * @return the number of entries used up, at least 1
+     */
+    private int flushRun(long[] dirty, int from, int max) {
+        // a frame dropped by resize since the listing holds no page any more
+        FrameTable frames = frametab;
+        int first = (int) (dirty[from] >>> 32);
+        ReentrantLock[] latches = new ReentrantLock[max];
+        long[] stamps = new long[max];
+        int n = 0;
+        try {
+            for (; n < max; n++) {
+                int pid = (int) (dirty[from + n] >>> 32);
+                int index = (int) dirty[from + n];
+                if (pid != first + n || index >= frames.size()) {
+                    break;
+                }
+                ReentrantLock latch = page_mapping.latch(pid);
+                if (n == 0) {
+                    page_mapping.lock(pid);
+                } else if (!latch.tryLock()) {
+                    break;
+                }
+                // the frame may have been reused or written before the latch
+                // was taken
+                long stamp = 0;
+                if (frames.getPage_number(index) == pid && frames.getDirty(index)) {
+                    stamp = frames.getContent_latch(index).tryReadLock();
+                    if (stamp == 0 && n == 0) {
+                        // a writer has the page; wait for it page by page
+                        try {
+                            flushFrame(index, pid);
+                        } finally {
+                            latch.unlock();
+                        }
+                        return 1;
+                    }
+                }
+                if (stamp == 0) {
+                    latch.unlock();
+                    break;
+                }
+                latches[n] = latch;
+                stamps[n] = stamp;
+            }
+            if (n == 0) {
+                return 1;
+            }
+
+            Page[] run = new Page[n];
+            for (int i = 0; i < n; i++) {
+                int index = (int) dirty[from + i];
+                frames.setWriting(index, true);
+                markClean(index);
+                run[i] = buffer_pool[index];
+            }
+            Minibase.DiskManager.write_pages(new PageId(first), run);
+            return n;
+        } finally {
+            for (int i = 0; i < n; i++) {
+                int index = (int) dirty[from + i];
+                if (frames.getWriting(index)) {
+                    writeDone(index);
+                }
+                frames.getContent_latch(index).unlockRead(stamps[i]);
+                latches[i].unlock();
+            }
+        }
+    }
+
+    /**
+     * Write a page in the buffer pool to disk, if dirty.
+     *
+     * @throws IllegalArgumentException if the page is not in the buffer pool
+     */
+    public void flushPage(PageId pageno) {
+        ReentrantLock latch = page_mapping.latch(pageno.pid);
+        page_mapping.lock(pageno.pid);
+        try {
+            int index = page_mapping.get(pageno.pid);
+            if (index == PageTable.INVALID_FRAME) {
+                throw new IllegalArgumentException("pageno is not in the buffer pool");
+            }
+            if (frametab.getDirty(index)) {
+                flushFrame(index, pageno.pid);
+            }
+        } finally {
+            latch.unlock();
+        }
+    }
+
+    /**
+     * Writes the given frame to disk as page pid and clears its dirty bit.
+     * The bit is cleared first, so an update made by a thread that has the
+     * page pinned while it is written marks the page dirty again; the frame
+     * is marked as being written instead until the write is done.
+     *
+     * The caller holds the stripe latch of the page.  The page is written
+     * under its shared content latch; if a writer holds the page, the stripe
+     * latch is let go while waiting, and the page is pinned meanwhile so that
+     * it stays in the frame.
+     */
+    private void flushFrame(int index, int pid) {
+        StampedLock content = frametab.getContent_latch(index);
+        long stamp = content.tryReadLock();
+        if (stamp == 0) {
+            ReentrantLock latch = page_mapping.latch(pid);
+            pinFrame(index);
+            latch.unlock();
+            try {
+                stamp = content.readLock();
+            } finally {
+                // an evicting caller holds another stripe latch, so this
+                // must not wait at the gate of page_mapping.lock
+                latch.lock();
+                unpinFrame(index);
+            }
+        }
+        frametab.setWriting(index, true);
+        try {
+            // Set dirty bit to false
+            markClean(index);
+            // Write page to disk
+            Minibase.DiskManager.write_page(new PageId(pid), buffer_pool[index]);
+        } finally {
+            writeDone(index);
+            content.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Writes the page in the given frame if it is dirty and unpinned, for
+     * the cleaner.  The stripe latch is only held to check and pin the frame,
+     * not during the write, and a frame whose stripe is busy or whose page a
+     * writer has latched is skipped.  The frame is marked as being written
+     * until the write is done, so that flushes listing the dirty pages
+     * meanwhile wait for it.
+     *
+     * @return true if the page was written
+     */
+    boolean cleanFrame(int index) {
+        // a frame dropped by resize meanwhile holds no page any more
+        FrameTable frames = frametab;
+        if (index >= frames.size()) {
+            return false;
+        }
+        int pid = frames.getPage_number(index);
+        if (!frames.isDirtyUnpinned(index)) {
+            return false;
+        }
+        ReentrantLock latch = page_mapping.latch(pid);
+        if (!latch.tryLock()) {
+            return false;
+        }
+        StampedLock content = frames.getContent_latch(index);
+        long stamp;
+        try {
+            if (frames.getPage_number(index) != pid || !frames.isDirtyUnpinned(index)) {
+                return false;
+            }
+            stamp = content.tryReadLock();
+            if (stamp == 0) {
+                return false;
+            }
+            // the pin keeps the page in the frame until it is written; a
+            // change made meanwhile marks the page dirty again
+            pinFrame(index);
+            frames.setWriting(index, true);
+            markClean(index);
+        } finally {
+            latch.unlock();
+        }
+
+        try {
+            Minibase.DiskManager.write_page(new PageId(pid), buffer_pool[index]);
+            metrics.cleaner_writes.increment();
+        } finally {
+            writeDone(index);
+            content.unlockRead(stamp);
+            latch.lock();
+            try {
+                unpinFrame(index);
+            } finally {
+                latch.unlock();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads pages into the pool ahead of their first pin, so that pinning
+     * them later does not wait for the disk.  Consecutive pages that are not
+     * resident are read together, up to MAX_LOAD_RUN pages with each disk
+     * request.  Only free or clean frames are used, and the pages are left
+     * unpinned, so they are evicted like any other if they are never used.
+     *
+     * @param start first page to read
+     * @param count number of pages; the run is cut at the end of the database
+     * @throws IllegalArgumentException if count is less than 1
+     */
+    public void prefetch(PageId start, int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Invalid prefetch count");
+        }
+        int end = Math.min(start.pid + count, Minibase.DiskManager.getNumDBPages());
+        int pid = Math.max(start.pid, 0);
+        while (pid < end) {
+            pid += Math.max(1, loadRun(pid, end - pid, true));
+        }
+    }
+
+    /**
+     * Pins a batch of pages as pinPage with PIN_DISKIO does.  The pages that
+     * are not resident are read first, runs of consecutive pages up to
+     * MAX_LOAD_RUN pages with each disk request.  Either all pages are
+     * pinned or, if one cannot be, none are.
+     *
+     * @param ids   the pages to pin
+     * @param pages output parameters: pages[i] refers to the frame of ids[i]
+     * @throws IllegalArgumentException if the arrays differ in length
+     * @throws IllegalStateException    if all pages are pinned (i.e. pool exceeded)
+     */
+    public void pinPages(PageId[] ids, Page[] pages) {
+        if (ids.length != pages.length) {
+            throw new IllegalArgumentException("Page ids and pages differ in length");
+        }
+
+        // read the missing pages in ascending order, a run at a time
+        int[] sorted = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            sorted[i] = ids[i].pid;
+        }
+        Arrays.sort(sorted);
+        int numdb = Minibase.DiskManager.getNumDBPages();
+        for (int i = 0; i < sorted.length; ) {
+            int j = i + 1;
+            while (j < sorted.length && sorted[j] <= sorted[j - 1] + 1) {
+                j++;
+            }
+            int first = Math.max(sorted[i], 0);
+            int end = Math.min(sorted[j - 1] + 1, numdb);
+            while (first < end) {
+                int n = loadRun(first, end - first, false);
+                first += Math.max(1, n);
+            }
+            i = j;
+        }
+
+        int pinned = 0;
+        try {
+            for (; pinned < ids.length; pinned++) {
+                pinPage(ids[pinned], pages[pinned], PIN_DISKIO);
+            }
+        } finally {
+            if (pinned < ids.length) {
+                for (int i = 0; i < pinned; i++) {
+                    unpinPage(ids[i], UNPIN_CLEAN);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a run of consecutive pages that are not resident with a single
+     * disk request, leaving them unpinned.  The stripe latch of every page
+     * of the run is held until the run is installed; only the first is
+     * waited for, and the run is cut short at a page whose stripe is busy,
+     * which is resident, or for which no frame can be had.  At most
+     * MAX_LOAD_RUN pages are read, so that pins of the stripes the run holds
+     * wait for one short read at most; a stripe already held for an earlier
+     * page of the run is not latched again.
+     *
+     * @param prefetched true for a prefetch: only free or clean frames are
+     *                   used and the pages count as read ahead; otherwise
+     *                   each page counts as a miss when it is first pinned
+     * @return the number of pages read
+     * @throws IllegalStateException if all pages are pinned and not prefetched
+     */
+    private int loadRun(int first, int count, boolean prefetched) {
+        count = Math.min(count, MAX_LOAD_RUN);
+        // the stripes latched for the run, each only once
+        ReentrantLock[] latches = new ReentrantLock[count];
+        int[] frames = new int[count];
+        int n = 0;
+        boolean installed = false;
+        try {
+            for (; n < count; n++) {
+                int pid = first + n;
+                ReentrantLock latch = page_mapping.latch(pid);
+                boolean held = n > 0 && latch.isHeldByCurrentThread();
+                if (n == 0) {
+                    page_mapping.lock(pid);
+                } else if (!held && !latch.tryLock()) {
+                    break;
+                }
+                int frame = PageTable.INVALID_FRAME;
+                try {
+                    if (page_mapping.get(pid) == PageTable.INVALID_FRAME) {
+                        frame = findInvalidFrame(pid, prefetched);
+                    }
+                } catch (IllegalStateException exc) {
+                    // the frames of the run so far are the last ones to be had
+                    if (n == 0) {
+                        throw exc;
+                    }
+                } finally {
+                    if (frame == PageTable.INVALID_FRAME && !held) {
+                        latch.unlock();
+                    }
+                }
+                if (frame == PageTable.INVALID_FRAME) {
+                    break;
+                }
+                latches[n] = held ? null : latch;
+                frames[n] = frame;
+            }
+            if (n == 0) {
+                return 0;
+            }
+
+            Page[] run = new Page[n];
+            for (int i = 0; i < n; i++) {
+                run[i] = buffer_pool[frames[i]];
+            }
+            Minibase.DiskManager.read_pages(new PageId(first), run);
+            CompressedCache cache = compressed;
+            for (int i = 0; i < n; i++) {
+                int index = frames[i];
+                frametab.setpage_number(index, first + i);
+                frametab.setPrefetched(index, prefetched);
+                frametab.setPreloaded(index, !prefetched);
+                frametab.setOnDisk(index, true);
+                if (cache != null) {
+                    cache.remove(first + i);
+                }
+                page_mapping.put(first + i, index);
+                replace.pin(index, first + i, true);
+                replace.unpin(index);
+            }
+            metrics.resident_frames.addAndGet(n);
+            if (prefetched) {
+                metrics.prefetches.add(n);
+            }
+            installed = true;
+            return n;
+        } finally {
+            for (int i = 0; i < n; i++) {
+                if (!installed) {
+                    releaseUnusedFrame(frames[i]);
+                }
+                if (latches[i] != null) {
+                    latches[i].unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Lists the pages in the pool with their hotness as rated by the
+     * replacement policy, hottest first, e.g. to load them again after a
+     * restart.
+     *
+     * @return entries of (hotness << 32 | page number)
+     */
+    public long[] getResidentPages() {
+        int[] hot = replace.getHotness();
+        FrameTable frames = frametab;
+        int numframes = Math.min(hot.length, frames.size());
+        long[] resident = new long[numframes];
         int count = 0;
-        for (FrameDesc frame : frametab) {
-            if (frame.getPin_count() == 0) {
-                count++;
+        for (int index = 0; index < numframes; index++) {
+            int pageno = frames.getPage_number(index);
+            if (pageno != INVALID_PAGEID) {
+                resident[count++] = ((long) Math.max(hot[index], 0) << 32) | pageno;
             }
         }
-        return count;
+        resident = Arrays.copyOf(resident, count);
+        Arrays.sort(resident);
+        for (int i = 0, j = count - 1; i < j; i++, j--) {
+            long swap = resident[i];
+            resident[i] = resident[j];
+            resident[j] = swap;
+        }
+        return resident;
+    }
+
+    /**
+     * Turns on sequential read-ahead.  A stream's window starts small and
+     * doubles each time it is read ahead, up to a limit; prefetched pages
+     * that are evicted unused halve the limit, and prefetched pages that
+     * are pinned raise it again, never beyond max_window.
+     *
+     * @param max_window most pages read ahead of a stream at once
+     * @throws IllegalArgumentException if max_window is less than 1
+     * @throws IllegalStateException if read-ahead is already on
+     */
+    public synchronized void startReadAhead(int max_window) {
+        if (readahead != null) {
+            throw new IllegalStateException("Read-ahead is already on");
+        }
+        readahead = new ReadAhead(this, max_window);
+    }
+
+    /**
+     * Turns off read-ahead, if on, and waits for pending reads to finish.
+     */
+    public synchronized void stopReadAhead() {
+        if (readahead != null) {
+            readahead.shutdown();
+            readahead = null;
+        }
+    }
+
+    /**
+     * Gets the number of pages read ahead.
+     */
+    public long getPrefetches() {
+        return metrics.getPrefetches();
+    }
+
+    /**
+     * Gets the number of pages read ahead that were then pinned.
+     */
+    public long getPrefetchHits() {
+        return metrics.getPrefetchHits();
+    }
+
+    /**
+     * Gets the number of pages read ahead that were evicted without being
+     * pinned.
+     */
+    public long getWastedPrefetches() {
+        return metrics.getWastedPrefetches();
+    }
+
+    /**
+     * Adds a pin to a frame.  The caller holds the latch of its page.
+     */
+    private void pinFrame(int index) {
+        if (frametab.increment_pin_count(index) == 1) {
+            metrics.pinned_frames.incrementAndGet();
+        }
+    }
+
+    /**
+     * Removes a pin from a frame, telling the replacement policy and any
+     * pins waiting for a frame once the last one is gone.  The caller holds the latch of its page.
+     */
+    private void unpinFrame(int index) {
+        if (frametab.decrement_pin_count(index) == 0) {
+            metrics.pinned_frames.decrementAndGet();
+            replace.unpin(index);
+            frameReleased();
+        }
+    }
+
+    /**
+     * Sets the dirty bit of a frame.  The caller holds the latch of its page.
+     */
+    private void markDirty(int index) {
+        if (!frametab.getDirty(index)) {
+            frametab.setDirty(index, true);
+            metrics.dirty_frames.incrementAndGet();
+        }
+    }
+
+    /**
+     * Clears the dirty bit of a frame whose page is written or freed.  The
+     * caller holds the latch of its page.
+     */
+    private void markClean(int index) {
+        if (frametab.getDirty(index)) {
+            frametab.setDirty(index, false);
+            frametab.setOnDisk(index, true);
+            metrics.dirty_frames.decrementAndGet();
+        }
+    }
+
+    /**
+     * Starts a background thread that writes dirty unpinned pages.  It
+     * starts writing when more than the high watermark of the frames are
+     * dirty and stops when no more than the low watermark are.
+     *
+     * @param pages_per_sec most pages the cleaner writes per second
+     * @param low_watermark fraction of dirty frames at which cleaning stops
+     * @param high_watermark fraction of dirty frames at which cleaning starts
+     * @throws IllegalArgumentException if the rate or watermarks are invalid
+     * @throws IllegalStateException if the cleaner is already running
+     */
+    public synchronized void startCleaner(int pages_per_sec, double low_watermark,
+            double high_watermark) {
+        if (cleaner != null) {
+            throw new IllegalStateException("Page cleaner is already running");
+        }
+        cleaner = new PageCleaner(this, pages_per_sec, low_watermark, high_watermark);
+        cleaner.start();
+    }
+
+    /**
+     * Stops the background cleaner, if running, and waits for it to finish.
+     */
+    public synchronized void stopCleaner() {
+        if (cleaner != null) {
+            cleaner.shutdown();
+            cleaner = null;
+        }
+    }
+
+    /**
+     * Gets the index of the frame the replacement policy will look at next,
+     * where the cleaner starts; 0 if the policy has no such position.
+     */
+    int getVictimHint() {
+        return (replace instanceof Clock) ? ((Clock) replace).getHand() : 0;
+    }
+
+    /**
+     * Gets the number of frames holding a dirty page.
+     */
+    public int getNumDirty() {
+        return metrics.getDirtyFrames();
+    }
+
+    /**
+     * Gets the number of evictions whose victim was clean.
+     */
+    public long getCleanVictims() {
+        return metrics.getEvictions() - metrics.getDirtyEvictions();
+    }
+
+    /**
+     * Gets the number of evictions that had to write the victim first.
+     */
+    public long getDirtyVictims() {
+        return metrics.getDirtyEvictions();
+    }
+
+    /**
+     * Gets the number of pages written by the cleaner.
+     */
+    public long getCleanerWrites() {
+        return metrics.getCleanerWrites();
+    }
+
+    /**
+     * Gets the live metrics of the buffer pool.
+     */
+    public BufferPoolMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Copies the current metrics of the buffer pool.
+     */
+    public BufferPoolStats snapshot() {
+        return metrics.snapshot();
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server, under the name
+     * minibase:type=BufferPool,name=<name>.
+     *
+     * @throws IllegalArgumentException if the name is invalid or in use
+     * @throws IllegalStateException if the metrics are already registered
+     */
+    public synchronized void registerMBean(String name) {
+        if (mbean_name != null) {
+            throw new IllegalStateException("Buffer pool MBean is already registered");
+        }
+        try {
+            ObjectName object_name = new ObjectName("minibase:type=BufferPool,name="
+                + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, object_name);
+            mbean_name = object_name;
+        } catch (JMException exc) {
+            throw new IllegalArgumentException("Cannot register buffer pool MBean: "
+                + exc.getMessage(), exc);
+        }
+    }
+
+    /**
+     * Unregisters the metrics from the platform MBean server, if registered.
+     */
+    public synchronized void unregisterMBean() {
+        if (mbean_name != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbean_name);
+            } catch (JMException exc) {
+                // already gone
+            }
+            mbean_name = null;
+        }
+    }
+
+    /**
+     * Gets the total number of buffer frames.
+     * 
+     * @return returns number of frames
+     */
+    public int getNumFrames() {
+        return frametab.size();
+    }
+
+    /**
+     * Gets the replacement policy, e.g. to read its counters.
+     */
+    public Replacer getReplacer() {
+        return replace;
+    }
+
+    /**
+     * Gets the total number of unpinned buffer frames.
+     * 
+     * @return Returns the number of unpinned frames
+     */
+    public int getNumUnpinned() {
+        return frametab.size() - metrics.getPinnedFrames();
     }
 
 } // public class BufMgr implements GlobalConst
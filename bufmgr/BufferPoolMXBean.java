@@ -0,0 +1,75 @@
+package bufmgr;
+
+/**
+ * Management interface of a buffer pool's metrics.  Counters run from the
+ * creation of the pool; gauges give the current state.
+ */
+public interface BufferPoolMXBean {
+
+    /** Gets the number of frames in the pool. */
+    int getNumFrames();
+
+    /** Gets the number of pins that found their page resident. */
+    long getHits();
+
+    /** Gets the number of pins that had to load their page. */
+    long getMisses();
+
+    /** Gets hits / (hits + misses), or 1 if there were no pins. */
+    double getHitRatio();
+
+    /** Gets the number of pages evicted to make room for others. */
+    long getEvictions();
+
+    /** Gets the number of evictions that had to write the victim first. */
+    long getDirtyEvictions();
+
+    /** Gets the number of pins that had to wait for another thread. */
+    long getPinWaits();
+
+    /** Gets the number of pages written by the background cleaner. */
+    long getCleanerWrites();
+
+    /** Gets the number of pages read ahead of their first pin. */
+    long getPrefetches();
+
+    /** Gets the number of pages read ahead that were then pinned. */
+    long getPrefetchHits();
+
+    /** Gets the number of pages read ahead that were evicted unused. */
+    long getWastedPrefetches();
+
+    /** Gets the number of pins that waited for a frame to be released. */
+    long getFrameWaits();
+
+    /** Gets the total time pins waited for a frame, in milliseconds. */
+    long getFrameWaitMillis();
+
+    /** Gets the number of pins that gave up waiting for a frame. */
+    long getFrameWaitTimeouts();
+
+    /** Gets the number of reads served without pinning their page. */
+    long getOptimisticReads();
+
+    /** Gets the number of optimistic reads that had to be made again. */
+    long getOptimisticRetries();
+
+    /** Gets the number of misses served from the compressed cache. */
+    long getCompressedHits();
+
+    /** Gets the number of frames holding a page. */
+    int getResidentFrames();
+
+    /** Gets the number of frames holding a dirty page. */
+    int getDirtyFrames();
+
+    /** Gets the number of frames holding a pinned page. */
+    int getPinnedFrames();
+
+    /** Gets the number of pins waiting for a frame right now. */
+    int getFrameWaiters();
+
+    /** Gets the number of bytes of pages in the compressed cache. */
+    long getCompressedBytes();
+
+} // public interface BufferPoolMXBean
@@ -0,0 +1,147 @@
+package bufmgr;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live metrics of a buffer pool.  The buffer manager updates them as it
+ * goes, so reading them never scans the frame table.  Counters that every
+ * pin touches are striped adders, so they do not become a point of
+ * contention between threads.
+ *
+ * The metrics can be published as an MXBean, see BufMgr.registerMBean, and
+ * snapshot() gives a consistent-enough copy for polling and for computing
+ * rates between two points in time.
+ */
+public class BufferPoolMetrics implements BufferPoolMXBean {
+
+    private volatile int numframes;
+
+    final LongAdder hits = new LongAdder();
+    final LongAdder misses = new LongAdder();
+    final LongAdder evictions = new LongAdder();
+    final LongAdder dirty_evictions = new LongAdder();
+    final LongAdder pin_waits = new LongAdder();
+    final LongAdder cleaner_writes = new LongAdder();
+    final LongAdder prefetches = new LongAdder();
+    final LongAdder prefetch_hits = new LongAdder();
+    final LongAdder wasted_prefetches = new LongAdder();
+    final LongAdder frame_waits = new LongAdder();
+    final LongAdder frame_wait_nanos = new LongAdder();
+    final LongAdder frame_wait_timeouts = new LongAdder();
+    final LongAdder optimistic_reads = new LongAdder();
+    final LongAdder optimistic_retries = new LongAdder();
+    final LongAdder compressed_hits = new LongAdder();
+
+    final AtomicInteger resident_frames = new AtomicInteger();
+    final AtomicInteger dirty_frames = new AtomicInteger();
+    final AtomicInteger pinned_frames = new AtomicInteger();
+    final AtomicInteger frame_waiters = new AtomicInteger();
+    final AtomicLong compressed_bytes = new AtomicLong();
+
+    BufferPoolMetrics(int numframes) {
+        this.numframes = numframes;
+    }
+
+    void setNumFrames(int numframes) {
+        this.numframes = numframes;
+    }
+
+    /**
+     * Copies the current values.
+     */
+    public BufferPoolStats snapshot() {
+        return new BufferPoolStats(this);
+    }
+
+    public int getNumFrames() {
+        return numframes;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public double getHitRatio() {
+        return BufferPoolStats.ratio(getHits(), getMisses());
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getDirtyEvictions() {
+        return dirty_evictions.sum();
+    }
+
+    public long getPinWaits() {
+        return pin_waits.sum();
+    }
+
+    public long getCleanerWrites() {
+        return cleaner_writes.sum();
+    }
+
+    public long getPrefetches() {
+        return prefetches.sum();
+    }
+
+    public long getPrefetchHits() {
+        return prefetch_hits.sum();
+    }
+
+    public long getWastedPrefetches() {
+        return wasted_prefetches.sum();
+    }
+
+    public long getFrameWaits() {
+        return frame_waits.sum();
+    }
+
+    public long getFrameWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(frame_wait_nanos.sum());
+    }
+
+    public long getFrameWaitTimeouts() {
+        return frame_wait_timeouts.sum();
+    }
+
+    public long getOptimisticReads() {
+        return optimistic_reads.sum();
+    }
+
+    public long getOptimisticRetries() {
+        return optimistic_retries.sum();
+    }
+
+    public long getCompressedHits() {
+        return compressed_hits.sum();
+    }
+
+    public int getResidentFrames() {
+        return resident_frames.get();
+    }
+
+    public int getDirtyFrames() {
+        return dirty_frames.get();
+    }
+
+    public int getPinnedFrames() {
+        return pinned_frames.get();
+    }
+
+    public int getFrameWaiters() {
+        return frame_waiters.get();
+    }
+
+    public long getCompressedBytes() {
+        return compressed_bytes.get();
+    }
+
+} // public class BufferPoolMetrics implements BufferPoolMXBean
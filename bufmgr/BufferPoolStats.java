@@ -0,0 +1,204 @@
+package bufmgr;
+
+/**
+ * Snapshot of a buffer pool's metrics.  Each value is read separately, so a
+ * snapshot taken while the pool is busy is not exact to the pin, but it is
+ * cheap enough to take every few seconds.  The difference of two snapshots
+ * gives the counters over the time between them, e.g. to alert on a
+ * collapse of the recent hit ratio rather than of the lifetime one.
+ */
+public class BufferPoolStats implements BufferPoolMXBean {
+
+    private final int num_frames;
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long dirty_evictions;
+    private final long pin_waits;
+    private final long cleaner_writes;
+    private final long prefetches;
+    private final long prefetch_hits;
+    private final long wasted_prefetches;
+    private final long frame_waits;
+    private final long frame_wait_millis;
+    private final long frame_wait_timeouts;
+    private final long optimistic_reads;
+    private final long optimistic_retries;
+    private final long compressed_hits;
+    private final int resident_frames;
+    private final int dirty_frames;
+    private final int pinned_frames;
+    private final int frame_waiters;
+    private final long compressed_bytes;
+
+    BufferPoolStats(BufferPoolMXBean from) {
+        num_frames = from.getNumFrames();
+        hits = from.getHits();
+        misses = from.getMisses();
+        evictions = from.getEvictions();
+        dirty_evictions = from.getDirtyEvictions();
+        pin_waits = from.getPinWaits();
+        cleaner_writes = from.getCleanerWrites();
+        prefetches = from.getPrefetches();
+        prefetch_hits = from.getPrefetchHits();
+        wasted_prefetches = from.getWastedPrefetches();
+        frame_waits = from.getFrameWaits();
+        frame_wait_millis = from.getFrameWaitMillis();
+        frame_wait_timeouts = from.getFrameWaitTimeouts();
+        optimistic_reads = from.getOptimisticReads();
+        optimistic_retries = from.getOptimisticRetries();
+        compressed_hits = from.getCompressedHits();
+        resident_frames = from.getResidentFrames();
+        dirty_frames = from.getDirtyFrames();
+        pinned_frames = from.getPinnedFrames();
+        frame_waiters = from.getFrameWaiters();
+        compressed_bytes = from.getCompressedBytes();
+    }
+
+    private BufferPoolStats(BufferPoolStats now, BufferPoolStats earlier) {
+        num_frames = now.num_frames;
+        hits = now.hits - earlier.hits;
+        misses = now.misses - earlier.misses;
+        evictions = now.evictions - earlier.evictions;
+        dirty_evictions = now.dirty_evictions - earlier.dirty_evictions;
+        pin_waits = now.pin_waits - earlier.pin_waits;
+        cleaner_writes = now.cleaner_writes - earlier.cleaner_writes;
+        prefetches = now.prefetches - earlier.prefetches;
+        prefetch_hits = now.prefetch_hits - earlier.prefetch_hits;
+        wasted_prefetches = now.wasted_prefetches - earlier.wasted_prefetches;
+        frame_waits = now.frame_waits - earlier.frame_waits;
+        frame_wait_millis = now.frame_wait_millis - earlier.frame_wait_millis;
+        frame_wait_timeouts = now.frame_wait_timeouts - earlier.frame_wait_timeouts;
+        optimistic_reads = now.optimistic_reads - earlier.optimistic_reads;
+        optimistic_retries = now.optimistic_retries - earlier.optimistic_retries;
+        compressed_hits = now.compressed_hits - earlier.compressed_hits;
+        resident_frames = now.resident_frames;
+        dirty_frames = now.dirty_frames;
+        pinned_frames = now.pinned_frames;
+        frame_waiters = now.frame_waiters;
+        compressed_bytes = now.compressed_bytes;
+    }
+
+    /**
+     * Gets the counters accumulated since an earlier snapshot; the gauges
+     * are those of this snapshot.
+     */
+    public BufferPoolStats since(BufferPoolStats earlier) {
+        return new BufferPoolStats(this, earlier);
+    }
+
+    /**
+     * Gets hits / (hits + misses), or 1 if there were no pins.
+     */
+    static double ratio(long hits, long misses) {
+        long pins = hits + misses;
+        return (pins == 0) ? 1.0 : (double) hits / pins;
+    }
+
+    public int getNumFrames() {
+        return num_frames;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public double getHitRatio() {
+        return ratio(hits, misses);
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public long getDirtyEvictions() {
+        return dirty_evictions;
+    }
+
+    public long getPinWaits() {
+        return pin_waits;
+    }
+
+    public long getCleanerWrites() {
+        return cleaner_writes;
+    }
+
+    public long getPrefetches() {
+        return prefetches;
+    }
+
+    public long getPrefetchHits() {
+        return prefetch_hits;
+    }
+
+    public long getWastedPrefetches() {
+        return wasted_prefetches;
+    }
+
+    public long getFrameWaits() {
+        return frame_waits;
+    }
+
+    public long getFrameWaitMillis() {
+        return frame_wait_millis;
+    }
+
+    public long getFrameWaitTimeouts() {
+        return frame_wait_timeouts;
+    }
+
+    public long getOptimisticReads() {
+        return optimistic_reads;
+    }
+
+    public long getOptimisticRetries() {
+        return optimistic_retries;
+    }
+
+    public long getCompressedHits() {
+        return compressed_hits;
+    }
+
+    public int getResidentFrames() {
+        return resident_frames;
+    }
+
+    public int getDirtyFrames() {
+        return dirty_frames;
+    }
+
+    public int getPinnedFrames() {
+        return pinned_frames;
+    }
+
+    public int getFrameWaiters() {
+        return frame_waiters;
+    }
+
+    public long getCompressedBytes() {
+        return compressed_bytes;
+    }
+
+    public String toString() {
+        return "hits=" + hits + " misses=" + misses
+            + " hit_ratio=" + String.format("%.3f", getHitRatio())
+            + " evictions=" + evictions + " dirty_evictions=" + dirty_evictions
+            + " pin_waits=" + pin_waits + " cleaner_writes=" + cleaner_writes
+            + " prefetches=" + prefetches + " prefetch_hits=" + prefetch_hits
+            + " wasted_prefetches=" + wasted_prefetches
+            + " frame_waits=" + frame_waits + " frame_wait_millis=" + frame_wait_millis
+            + " frame_wait_timeouts=" + frame_wait_timeouts
+            + " optimistic_reads=" + optimistic_reads
+            + " optimistic_retries=" + optimistic_retries
+            + " compressed_hits=" + compressed_hits
+            + " resident=" + resident_frames + "/" + num_frames
+            + " dirty=" + dirty_frames + " pinned=" + pinned_frames
+            + " frame_waiters=" + frame_waiters
+            + " compressed_bytes=" + compressed_bytes;
+    }
+
+} // public class BufferPoolStats implements BufferPoolMXBean
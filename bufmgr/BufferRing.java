@@ -0,0 +1,87 @@
+package bufmgr;
+
+import global.GlobalConst;
+
+/**
+ * Small private set of frames for a large sequential operation, such as a
+ * full scan or a bulk load.  Pages the operation pins through the ring that
+ * miss the pool are loaded into the ring's frames in turn, each replacing
+ * the page loaded into that frame one lap earlier, so the operation does
+ * not push the rest of the pool out.  See BufMgr.pinPage(PageId, Page, int,
+ * BufferRing).
+ *
+ * A ring belongs to one operation and is not thread-safe.
+ */
+public class BufferRing implements GlobalConst {
+
+    /** Number of frames in a ring made by the constructor that takes none. */
+    public static final int DEFAULT_SIZE = 16;
+
+    /** Frame of each slot, and the page the ring last loaded into it. */
+    private final int[] frames;
+    private final int[] pages;
+
+    /** Slot to use for the next miss. */
+    private int next;
+
+    public BufferRing() {
+        this(DEFAULT_SIZE);
+    }
+
+    /**
+     * Constructs an empty ring; it takes frames from the pool as it fills.
+     *
+     * @param size number of frames in the ring
+     * @throws IllegalArgumentException if size is less than 1
+     */
+    public BufferRing(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Invalid ring size");
+        }
+        frames = new int[size];
+        pages = new int[size];
+        for (int i = 0; i < size; i++) {
+            frames[i] = PageTable.INVALID_FRAME;
+            pages[i] = INVALID_PAGEID;
+        }
+    }
+
+    /**
+     * Gets the number of frames in the ring.
+     */
+    public int getSize() {
+        return frames.length;
+    }
+
+    /**
+     * Gets the slot to use for the next miss and moves on.
+     */
+    int nextSlot() {
+        int slot = next;
+        next = (next + 1) % frames.length;
+        return slot;
+    }
+
+    /**
+     * Gets the frame of a slot, or INVALID_FRAME if it has none yet.
+     */
+    int getFrame(int slot) {
+        return frames[slot];
+    }
+
+    /**
+     * Gets the page last loaded into the frame of a slot.
+     */
+    int getPage(int slot) {
+        return pages[slot];
+    }
+
+    /**
+     * Records the frame of a slot and the page loaded into it.
+     */
+    void setSlot(int slot, int frame, int pid) {
+        frames[slot] = frame;
+        pages[slot] = pid;
+    }
+
+} // public class BufferRing implements GlobalConst
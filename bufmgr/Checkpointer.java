@@ -0,0 +1,44 @@
+package bufmgr;
+
+/**
+ * Background thread that takes a fuzzy checkpoint of every buffer pool at a
+ * fixed interval, so that the pages changed and unpinned before the last
+ * checkpoint are on disk however long the database stays open.
+ */
+class Checkpointer extends BackgroundWorker {
+
+    private final PoolMgr pools;
+    private final long interval_millis;
+    private final int batch_pages;
+    private final long pause_millis;
+
+    /**
+     * Constructs a checkpointer for the given pools; call start to run it.
+     *
+     * @throws IllegalArgumentException if the interval or batches are invalid
+     */
+    Checkpointer(PoolMgr pools, long interval_millis, int batch_pages,
+            long pause_millis) {
+        super("Checkpointer");
+        if (interval_millis < 1) {
+            throw new IllegalArgumentException("Invalid checkpoint interval");
+        }
+        if (batch_pages < 1 || pause_millis < 0) {
+            throw new IllegalArgumentException("Invalid checkpoint batch");
+        }
+        this.pools = pools;
+        this.interval_millis = interval_millis;
+        this.batch_pages = batch_pages;
+        this.pause_millis = pause_millis;
+    }
+
+    public void run() {
+        while (isRunning()) {
+            pause(interval_millis);
+            if (isRunning()) {
+                pools.checkpoint(batch_pages, pause_millis);
+            }
+        }
+    }
+
+} // class Checkpointer extends BackgroundWorker
@@ -1,33 +1,148 @@
 package bufmgr;
 
+import java.util.Arrays;
 
-public class Clock {
-    // We will probably want to change this, but I just wanted to get it working. 
-    BufMgr buf;
-    public Clock(BufMgr buf) {
-        this.buf = buf;
-    }
-    
-    public int pickVictim() {
-        
-        for (int i = 0; i <= 1; i++) {
-            for (FrameDesc frame : buf.frametab) {
-                //if (buf.buffer_pool[buf.page_mapping.get(frame.getPage_number())].getData() == null) {
-                //    return buf.page_mapping.get(frame.getPage_number());
-                //}
-                if (frame.getPage_number() == -1) {
-                    return buf.page_mapping.get(frame.getPage_number());
-                }
+/**
+ * Clock replacement policy.  The hand keeps its position between calls, so
+ * each eviction resumes the sweep where the previous one stopped instead of
+ * starting again at frame 0.  A frame's reference bit is set when it is
+ * unpinned and cleared the first time the hand passes it, which gives the
+ * page a second chance before it is chosen.
+ */
+public class Clock implements Replacer {
+
+    /** Whether each frame holds an unpinned page. */
+    private boolean[] candidate;
+
+    /** Reference bit of each frame. */
+    private boolean[] reference_bit;
+
+    /** Whether each frame was returned by pickVictim and not yet given back. */
+    private boolean[] picked;
+
+    /** Index of the next frame the hand will look at. */
+    private int hand;
+
+    /** Frames the hand passed over during the most recent eviction. */
+    private int last_sweep;
+
+    /** Frames the hand passed over during all evictions. */
+    private long total_sweep;
+
+    /** Number of victims picked. */
+    private long num_victims;
+
+    public Clock(int numframes) {
+        candidate = new boolean[numframes];
+        reference_bit = new boolean[numframes];
+        picked = new boolean[numframes];
+    }
 
-                if (frame.getPin_count() == 0) {
-                    if (frame.getReference_bit()) {
-                        frame.setReference_bit(false); 
-                    } else {
-                        return buf.page_mapping.get(frame.getPage_number());
-                    }
+    public synchronized void pin(int frame, int pid, boolean loaded) {
+        candidate[frame] = false;
+    }
+
+    public synchronized void unpin(int frame) {
+        candidate[frame] = true;
+        reference_bit[frame] = true;
+    }
+
+    public synchronized void free(int frame) {
+        candidate[frame] = false;
+        reference_bit[frame] = false;
+        picked[frame] = false;
+    }
+
+    public synchronized void restore(int frame, int pid) {
+        picked[frame] = false;
+    }
+
+    public synchronized void resize(int numframes) {
+        candidate = Arrays.copyOf(candidate, numframes);
+        reference_bit = Arrays.copyOf(reference_bit, numframes);
+        picked = Arrays.copyOf(picked, numframes);
+        hand %= numframes;
+    }
+
+    /**
+     * Rates pinned frames above those with their reference bit set, and
+     * those above the rest; the clock keeps no finer order.
+     */
+    public synchronized int[] getHotness() {
+        int[] hot = new int[candidate.length];
+        for (int i = 0; i < hot.length; i++) {
+            hot[i] = !candidate[i] ? 2 : reference_bit[i] ? 1 : 0;
+        }
+        return hot;
+    }
+
+    /**
+     * Advances the hand to the next replaceable frame.  Every reference bit
+     * can be cleared at most once per unpin, so over a run of evictions the
+     * hand moves a constant number of frames per victim.
+     *
+     * @return index of the chosen frame
+     * @throws IllegalStateException if all frames are pinned
+     */
+    public synchronized int pickVictim(int pid) {
+
+        int numframes = candidate.length;
+
+        // two revolutions: the first may only clear reference bits
+        for (int swept = 1; swept <= 2 * numframes; swept++) {
+            int index = hand;
+            hand = (hand + 1) % numframes;
+
+            if (candidate[index] && !picked[index]) {
+                if (reference_bit[index]) {
+                    reference_bit[index] = false;
+                } else {
+                    picked[index] = true;
+                    return victim(index, swept);
                 }
             }
         }
-        throw new IllegalStateException();
+        last_sweep = 2 * numframes;
+        total_sweep += last_sweep;
+        throw new IllegalStateException("All frames are pinned");
+    }
+
+    /**
+     * Records the sweep length of a successful pick.
+     */
+    private int victim(int index, int swept) {
+        last_sweep = swept;
+        total_sweep += swept;
+        num_victims++;
+        return index;
     }
-}
+
+    /**
+     * Gets the index of the frame the hand will look at next.
+     */
+    public synchronized int getHand() {
+        return hand;
+    }
+
+    /**
+     * Gets the number of frames the hand swept on the most recent eviction.
+     */
+    public synchronized int getLastSweep() {
+        return last_sweep;
+    }
+
+    /**
+     * Gets the number of frames the hand swept over all evictions.
+     */
+    public synchronized long getTotalSweep() {
+        return total_sweep;
+    }
+
+    /**
+     * Gets the number of victims picked so far.
+     */
+    public synchronized long getNumVictims() {
+        return num_victims;
+    }
+
+} // public class Clock implements Replacer
@@ -0,0 +1,171 @@
+package bufmgr;
+
+import global.GlobalConst;
+import global.Page;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Second-level cache of pages evicted from a buffer pool, kept compressed
+ * in memory, so that a miss of the pool that finds its page here is served
+ * by decompressing it instead of reading the disk.
+ *
+ * The cache only holds copies of what the disk holds, of pages that are
+ * not resident in the pool: a page leaves it when the pool loads the page
+ * again or frees it.  No entry can therefore fall behind the disk, and
+ * dropping one loses nothing.  The buffer manager only uses the cache for a
+ * page under the latch of the page's stripe; the lock of the cache guards
+ * the map, not the compression.
+ *
+ * Once the entries exceed the byte budget, the least recently stored are
+ * dropped.  A page that does not compress is kept as it is.
+ */
+class CompressedCache implements GlobalConst {
+
+    // compressors are costly to create, so each thread keeps its own
+    private static final ThreadLocal<Deflater> DEFLATER =
+        ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED));
+    private static final ThreadLocal<Inflater> INFLATER =
+        ThreadLocal.withInitial(Inflater::new);
+    private static final ThreadLocal<byte[]> SCRATCH =
+        ThreadLocal.withInitial(() -> new byte[PAGE_SIZE - 1]);
+
+    private final long max_bytes;
+
+    // compressed page of each page number, least recently stored first
+    private final LinkedHashMap<Integer, byte[]> entries = new LinkedHashMap<>();
+    private long bytes;
+
+    // gauge of the pool's metrics that follows bytes
+    private final AtomicLong bytes_gauge;
+
+    /**
+     * Constructs an empty cache that holds at most max_bytes of compressed
+     * pages.
+     */
+    CompressedCache(long max_bytes, AtomicLong bytes_gauge) {
+        this.max_bytes = max_bytes;
+        this.bytes_gauge = bytes_gauge;
+    }
+
+    /**
+     * Gets the most bytes of compressed pages the cache holds.
+     */
+    long getMaxBytes() {
+        return max_bytes;
+    }
+
+    /**
+     * Stores a compressed copy of a page, which must be the same as on disk,
+     * dropping the oldest entries if the cache is full.
+     */
+    void put(int pid, Page page) {
+        byte[] packed = compress(page);
+        if (packed.length > max_bytes) {
+            return;
+        }
+        synchronized (this) {
+            byte[] old = entries.remove(pid);
+            if (old != null) {
+                adjust(-old.length);
+            }
+            entries.put(pid, packed);
+            adjust(packed.length);
+            Iterator<byte[]> oldest = entries.values().iterator();
+            while (bytes > max_bytes) {
+                adjust(-oldest.next().length);
+                oldest.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes a page from the cache and decompresses it into the given page.
+     *
+     * @return false if the cache held no copy of the page
+     */
+    boolean take(int pid, Page page) {
+        byte[] packed;
+        synchronized (this) {
+            packed = entries.remove(pid);
+            if (packed == null) {
+                return false;
+            }
+            adjust(-packed.length);
+        }
+        expand(packed, page);
+        return true;
+    }
+
+    /**
+     * Drops the copy of a page, if any.
+     */
+    synchronized void remove(int pid) {
+        byte[] old = entries.remove(pid);
+        if (old != null) {
+            adjust(-old.length);
+        }
+    }
+
+    /**
+     * Drops every entry.
+     */
+    synchronized void clear() {
+        adjust(-bytes);
+        entries.clear();
+    }
+
+    private void adjust(long delta) {
+        bytes += delta;
+        bytes_gauge.addAndGet(delta);
+    }
+
+    /**
+     * Compresses a page; the result is PAGE_SIZE bytes long only if the page
+     * was copied as it is.
+     */
+    private static byte[] compress(Page page) {
+        Deflater deflater = DEFLATER.get();
+        byte[] scratch = SCRATCH.get();
+        deflater.reset();
+        deflater.setInput(page.getBuffer());
+        deflater.finish();
+        int length = deflater.deflate(scratch);
+        if (!deflater.finished()) {
+            byte[] raw = new byte[PAGE_SIZE];
+            page.getBuffer().get(raw);
+            return raw;
+        }
+        return Arrays.copyOf(scratch, length);
+    }
+
+    /**
+     * Decompresses a page made by compress into the given page.
+     */
+    private static void expand(byte[] packed, Page page) {
+        ByteBuffer into = page.getBuffer();
+        if (packed.length == PAGE_SIZE) {
+            into.put(packed);
+            return;
+        }
+        Inflater inflater = INFLATER.get();
+        inflater.reset();
+        inflater.setInput(packed);
+        try {
+            inflater.inflate(into);
+        } catch (DataFormatException exc) {
+            throw new IllegalStateException("Compressed page is corrupt", exc);
+        }
+        if (into.hasRemaining()) {
+            throw new IllegalStateException("Compressed page is corrupt");
+        }
+    }
+
+} // class CompressedCache implements GlobalConst
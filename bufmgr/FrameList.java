@@ -0,0 +1,121 @@
+package bufmgr;
+
+import java.util.Arrays;
+
+/**
+ * Doubly-linked list of frame indexes, ordered from the first frame added to
+ * the last.  Links are kept in int arrays indexed by frame, so adding,
+ * removing and membership tests are O(1) and never allocate.
+ */
+class FrameList {
+
+    /** Marks the end of the list. */
+    static final int NONE = -1;
+
+    private int[] prev;
+    private int[] next;
+    private boolean[] member;
+    private int head = NONE;
+    private int tail = NONE;
+    private int size;
+
+    /**
+     * Constructs an empty list able to hold every frame of the pool.
+     */
+    FrameList(int numframes) {
+        prev = new int[numframes];
+        next = new int[numframes];
+        member = new boolean[numframes];
+    }
+
+    /**
+     * Makes room for the given number of frames.  When shrinking, the
+     * frames dropped must not be in the list.
+     */
+    void resize(int numframes) {
+        prev = Arrays.copyOf(prev, numframes);
+        next = Arrays.copyOf(next, numframes);
+        member = Arrays.copyOf(member, numframes);
+    }
+
+    /**
+     * Appends the frame at the end of the list.
+     */
+    void addLast(int frame) {
+        prev[frame] = tail;
+        next[frame] = NONE;
+        if (tail == NONE) {
+            head = frame;
+        } else {
+            next[tail] = frame;
+        }
+        tail = frame;
+        member[frame] = true;
+        size++;
+    }
+
+    /**
+     * Removes the frame from the list, if present.
+     *
+     * @return true if the frame was in the list
+     */
+    boolean remove(int frame) {
+        if (!member[frame]) {
+            return false;
+        }
+        if (prev[frame] == NONE) {
+            head = next[frame];
+        } else {
+            next[prev[frame]] = next[frame];
+        }
+        if (next[frame] == NONE) {
+            tail = prev[frame];
+        } else {
+            prev[next[frame]] = prev[frame];
+        }
+        member[frame] = false;
+        size--;
+        return true;
+    }
+
+    /**
+     * Returns true if the frame is in the list.
+     */
+    boolean contains(int frame) {
+        return member[frame];
+    }
+
+    /**
+     * Gets the first frame in the list, or NONE if it is empty.
+     */
+    int first() {
+        return head;
+    }
+
+    /**
+     * Gets the frame after the given one, or NONE at the end of the list.
+     */
+    int next(int frame) {
+        return next[frame];
+    }
+
+    /**
+     * Numbers the frames in list order, from + 1 onwards, into hot.
+     *
+     * @return the last number given, or from if the list is empty
+     */
+    int rank(int[] hot, int from) {
+        for (int frame = head; frame != NONE; frame = next[frame]) {
+            hot[frame] = ++from;
+        }
+        return from;
+    }
+
+    /**
+     * Gets the number of frames in the list.
+     */
+    int size() {
+        return size;
+    }
+
+} // class FrameList
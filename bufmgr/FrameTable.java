@@ -0,0 +1,269 @@
+package bufmgr;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Describes the state of the frames of the buffer pool.  The state of a
+ * frame is packed into one long word: the page number in the low 32 bits,
+ * then the dirty, prefetched, on-disk, preloaded and writing bits, then
+ * the pin count.  The words are kept in plain arrays rather than an object per frame, so that scans of
+ * the pool read consecutive memory.
+ *
+ * Words are read with volatile semantics and changed by compare-and-set,
+ * so they can be read without any latch, as optimistic reads and the
+ * cleaner's scan do; such a read may be stale by the time it is used.
+ * Every change, pins and their release included, is made under the stripe
+ * latch of the page the frame holds.  A frame that holds no page, taken
+ * from the free frames or just evicted, is changed under the latch of the
+ * page being put into it, since no other thread can reach the frame until
+ * that page is mapped to it.  Resizing holds the latches of all stripes.
+ *
+ * The words are stored in segments of a fixed number of frames.  Resizing
+ * gives a new table that shares the segments of the frames it keeps, so a
+ * frame keeps its state and content latch for as long as it is in the pool,
+ * and a thread still holding the old table sees the same frames.
+ *
+ * The content latches are separate: each is held by threads that read or
+ * write the data of the page, and only while they have the page pinned.
+ * Their stamps also serve as the version of a frame for optimistic reads.
+ */
+class FrameTable {
+
+    /** Number of frames per segment; a power of two. */
+    static final int SEGMENT_FRAMES = 256;
+
+    private static final int SEGMENT_SHIFT = Integer.numberOfTrailingZeros(SEGMENT_FRAMES);
+
+    private static final VarHandle WORD = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private static final long PAGE_MASK = 0xFFFFFFFFL;
+    private static final long DIRTY = 1L << 32;
+    private static final long PREFETCHED = 1L << 33;
+    private static final long ON_DISK = 1L << 34;
+    private static final long PRELOADED = 1L << 35;
+    private static final long WRITING = 1L << 36;
+    private static final int PIN_SHIFT = 37;
+    private static final long PIN_ONE = 1L << PIN_SHIFT;
+
+    /** Word of a frame that holds no page. */
+    private static final long EMPTY = -1L & PAGE_MASK;
+
+    private final long[][] words;
+    private final StampedLock[][] latches;
+    private final int numframes;
+
+    /**
+     * Constructs a table of frames that hold no page.
+     */
+    FrameTable(int numframes) {
+        this(new long[0][], new StampedLock[0][], numframes);
+    }
+
+    private FrameTable(long[][] words, StampedLock[][] latches, int numframes) {
+        int segments = (numframes + SEGMENT_FRAMES - 1) >>> SEGMENT_SHIFT;
+        int old = words.length;
+        this.words = Arrays.copyOf(words, segments);
+        this.latches = Arrays.copyOf(latches, segments);
+        for (int s = old; s < segments; s++) {
+            this.words[s] = new long[SEGMENT_FRAMES];
+            Arrays.fill(this.words[s], EMPTY);
+            this.latches[s] = new StampedLock[SEGMENT_FRAMES];
+            for (int i = 0; i < SEGMENT_FRAMES; i++) {
+                this.latches[s][i] = new StampedLock();
+            }
+        }
+        this.numframes = numframes;
+    }
+
+    /**
+     * Gets a table of the given size that shares the frames of this one
+     * below that size.  Frames added must hold no page; when shrinking, so
+     * must the frames dropped.
+     */
+    FrameTable resize(int numframes) {
+        return new FrameTable(words, latches, numframes);
+    }
+
+    /**
+     * Gets the number of frames.
+     */
+    int size() {
+        return numframes;
+    }
+
+    private long word(int index) {
+        return (long) WORD.getVolatile(words[index >>> SEGMENT_SHIFT], index & (SEGMENT_FRAMES - 1));
+    }
+
+    /**
+     * Sets or clears the given bits of a word, or replaces its page number.
+     */
+    private void update(int index, long clear, long set) {
+        long[] segment = words[index >>> SEGMENT_SHIFT];
+        int slot = index & (SEGMENT_FRAMES - 1);
+        while (true) {
+            long word = (long) WORD.getVolatile(segment, slot);
+            if (WORD.compareAndSet(segment, slot, word, (word & ~clear) | set)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns a frame to the state of a frame that holds no page.  The
+     * content latch is taken for writing meanwhile, so that optimistic reads
+     * of the page the frame held fail to validate even if the frame is later
+     * loaded with the same page again.  The frame must be unpinned and the
+     * caller must hold the latch of its page, so nobody else can hold the
+     * content latch and this never waits.
+     */
+    void reset(int index) {
+        StampedLock latch = getContent_latch(index);
+        long stamp = latch.writeLock();
+        WORD.setVolatile(words[index >>> SEGMENT_SHIFT], index & (SEGMENT_FRAMES - 1), EMPTY);
+        latch.unlockWrite(stamp);
+    }
+
+    /**
+     * Returns the page number of a frame
+     */
+    int getPage_number(int index) {
+        return (int) word(index);
+    }
+
+    /**
+     * Set the page number of a frame
+     */
+    void setpage_number(int index, int pageno) {
+        update(index, PAGE_MASK, pageno & PAGE_MASK);
+    }
+
+    /**
+     * Sets the dirty bit of a frame
+     */
+    void setDirty(int index, boolean toSet) {
+        update(index, DIRTY, toSet ? DIRTY : 0);
+    }
+
+    /**
+     * Returns whether the dirty bit of a frame is set
+     */
+    boolean getDirty(int index) {
+        return (word(index) & DIRTY) != 0;
+    }
+
+    /**
+     * Sets whether the page was read ahead and has not been pinned since
+     */
+    void setPrefetched(int index, boolean toSet) {
+        update(index, PREFETCHED, toSet ? PREFETCHED : 0);
+    }
+
+    /**
+     * Returns whether the page was read ahead and has not been pinned since
+     */
+    boolean getPrefetched(int index) {
+        return (word(index) & PREFETCHED) != 0;
+    }
+
+    /**
+     * Sets whether the disk holds the page as the frame does, apart from
+     * changes made since it was last marked dirty
+     */
+    void setOnDisk(int index, boolean toSet) {
+        update(index, ON_DISK, toSet ? ON_DISK : 0);
+    }
+
+    /**
+     * Returns whether the disk holds the page as the frame does, apart from
+     * changes made since it was last marked dirty
+     */
+    boolean getOnDisk(int index) {
+        return (word(index) & ON_DISK) != 0;
+    }
+
+    /**
+     * Sets whether the page was read for a pin that has not happened yet
+     */
+    void setPreloaded(int index, boolean toSet) {
+        update(index, PRELOADED, toSet ? PRELOADED : 0);
+    }
+
+    /**
+     * Returns whether the page was read for a pin that has not happened yet
+     */
+    boolean getPreloaded(int index) {
+        return (word(index) & PRELOADED) != 0;
+    }
+
+    /**
+     * Sets whether the page is being written to disk
+     */
+    void setWriting(int index, boolean toSet) {
+        update(index, WRITING, toSet ? WRITING : 0);
+    }
+
+    /**
+     * Returns whether the page is being written to disk
+     */
+    boolean getWriting(int index) {
+        return (word(index) & WRITING) != 0;
+    }
+
+    /**
+     * Increments the pin count of a frame by 1
+     *
+     * @return the new pin count
+     */
+    int increment_pin_count(int index) {
+        long word = (long) WORD.getAndAdd(words[index >>> SEGMENT_SHIFT],
+                                          index & (SEGMENT_FRAMES - 1), PIN_ONE);
+        return (int) (word >>> PIN_SHIFT) + 1;
+    }
+
+    /**
+     * Decrements the pin count of a frame by 1, as long as it is > 0
+     *
+     * @return the new pin count, or -1 if the frame was not pinned
+     */
+    int decrement_pin_count(int index) {
+        long[] segment = words[index >>> SEGMENT_SHIFT];
+        int slot = index & (SEGMENT_FRAMES - 1);
+        while (true) {
+            long word = (long) WORD.getVolatile(segment, slot);
+            if (word >>> PIN_SHIFT == 0) {
+                return -1;
+            }
+            if (WORD.compareAndSet(segment, slot, word, word - PIN_ONE)) {
+                return (int) (word >>> PIN_SHIFT) - 1;
+            }
+        }
+    }
+
+    /**
+     * Returns the pin count of a frame
+     */
+    int getPin_count(int index) {
+        return (int) (word(index) >>> PIN_SHIFT);
+    }
+
+    /**
+     * Returns true if the frame holds a dirty page that is not pinned, i.e.
+     * one the cleaner may write; a single read of the frame's word.
+     */
+    boolean isDirtyUnpinned(int index) {
+        long word = word(index);
+        return (word & DIRTY) != 0 && (word >>> PIN_SHIFT) == 0 && (word & PAGE_MASK) != EMPTY;
+    }
+
+    /**
+     * Returns the shared/exclusive latch on the contents of a frame
+     */
+    StampedLock getContent_latch(int index) {
+        return latches[index >>> SEGMENT_SHIFT][index & (SEGMENT_FRAMES - 1)];
+    }
+
+} // class FrameTable
@@ -0,0 +1,127 @@
+package bufmgr;
+
+import global.GlobalConst;
+
+/**
+ * First-in first-out list of page numbers that are no longer resident, used
+ * by policies that remember recently evicted pages.  Entries live in a ring
+ * and a PageTable maps each page number to its slot, so lookups and removals
+ * from the middle are O(1); removed slots are skipped and squeezed out when
+ * the ring fills up.
+ */
+class GhostList implements GlobalConst {
+
+    private int capacity;
+    private int[] ring;
+    private int[] scratch;
+    private final PageTable slots;
+    private long start;
+    private long end;
+    private int size;
+
+    /**
+     * Constructs an empty list that remembers at most capacity pages.
+     */
+    GhostList(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        ring = new int[this.capacity * 2];
+        scratch = new int[ring.length];
+        slots = new PageTable(this.capacity);
+    }
+
+    /**
+     * Returns true if the page is in the list.
+     */
+    boolean contains(int pid) {
+        return slots.get(pid) != PageTable.INVALID_FRAME;
+    }
+
+    /**
+     * Adds the page as the newest entry, dropping the oldest if full.
+     */
+    void add(int pid) {
+        remove(pid);
+        if (size == capacity) {
+            removeOldest();
+        }
+        if (end - start == ring.length) {
+            compact();
+        }
+        int slot = (int) (end++ % ring.length);
+        ring[slot] = pid;
+        slots.put(pid, slot);
+        size++;
+    }
+
+    /**
+     * Removes the page from the list, if present.
+     *
+     * @return true if the page was in the list
+     */
+    boolean remove(int pid) {
+        int slot = slots.remove(pid);
+        if (slot == PageTable.INVALID_FRAME) {
+            return false;
+        }
+        ring[slot] = INVALID_PAGEID;
+        size--;
+        return true;
+    }
+
+    /**
+     * Removes the oldest page from the list, if any.
+     */
+    void removeOldest() {
+        while (size > 0) {
+            int pid = ring[(int) (start++ % ring.length)];
+            if (pid != INVALID_PAGEID) {
+                slots.remove(pid);
+                size--;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Gets the number of pages in the list.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Changes the number of pages remembered, dropping the oldest if there
+     * are more than that.
+     */
+    void resize(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        while (size > this.capacity) {
+            removeOldest();
+        }
+        int[] old_ring = ring;
+        compact();
+        ring = new int[this.capacity * 2];
+        System.arraycopy(old_ring, 0, ring, 0, (int) end);
+        scratch = new int[ring.length];
+    }
+
+    /**
+     * Moves the remaining entries to the front of the ring, in order.
+     */
+    private void compact() {
+        int count = 0;
+        for (long i = start; i < end; i++) {
+            int pid = ring[(int) (i % ring.length)];
+            if (pid != INVALID_PAGEID) {
+                scratch[count++] = pid;
+            }
+        }
+        for (int slot = 0; slot < count; slot++) {
+            ring[slot] = scratch[slot];
+            slots.put(scratch[slot], slot);
+        }
+        start = 0;
+        end = count;
+    }
+
+} // class GhostList implements GlobalConst
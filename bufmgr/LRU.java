@@ -0,0 +1,80 @@
+package bufmgr;
+
+import global.GlobalConst;
+
+import java.util.Arrays;
+
+/**
+ * Least-recently-used replacement policy.  Unpinned frames are kept in a
+ * list in the order their last pin was released, and the victim is the
+ * frame at the front of that list.
+ */
+public class LRU implements Replacer, GlobalConst {
+
+    /** Unpinned frames, least recently used first. */
+    private final FrameList unpinned;
+
+    private int[] frame_pid;
+    private boolean[] pinned;
+
+    public LRU(int numframes) {
+        unpinned = new FrameList(numframes);
+        frame_pid = new int[numframes];
+        pinned = new boolean[numframes];
+    }
+
+    public synchronized void pin(int frame, int pid, boolean loaded) {
+        unpinned.remove(frame);
+        frame_pid[frame] = pid;
+        pinned[frame] = true;
+    }
+
+    public synchronized void unpin(int frame) {
+        pinned[frame] = false;
+        if (!unpinned.contains(frame)) {
+            unpinned.addLast(frame);
+        }
+    }
+
+    public synchronized void free(int frame) {
+        unpinned.remove(frame);
+        frame_pid[frame] = INVALID_PAGEID;
+        pinned[frame] = false;
+    }
+
+    public synchronized void restore(int frame, int pid) {
+        if (frame_pid[frame] == pid && !pinned[frame] && !unpinned.contains(frame)) {
+            unpinned.addLast(frame);
+        }
+    }
+
+    public synchronized void resize(int numframes) {
+        unpinned.resize(numframes);
+        frame_pid = Arrays.copyOf(frame_pid, numframes);
+        pinned = Arrays.copyOf(pinned, numframes);
+    }
+
+    /**
+     * Rates unpinned frames by recency of use, and pinned frames above all.
+     */
+    public synchronized int[] getHotness() {
+        int[] hot = new int[pinned.length];
+        int top = unpinned.rank(hot, 0) + 1;
+        for (int i = 0; i < hot.length; i++) {
+            if (pinned[i]) {
+                hot[i] = top;
+            }
+        }
+        return hot;
+    }
+
+    public synchronized int pickVictim(int pid) {
+        int frame = unpinned.first();
+        if (frame == FrameList.NONE) {
+            throw new IllegalStateException("All frames are pinned");
+        }
+        unpinned.remove(frame);
+        return frame;
+    }
+
+} // public class LRU implements Replacer, GlobalConst
@@ -0,0 +1,271 @@
+package bufmgr;
+
+import global.GlobalConst;
+
+import java.util.Arrays;
+
+/**
+ * LRU-K replacement policy (O'Neil, O'Neil and Weikum).  The victim is the
+ * unpinned page whose K-th most recent reference is the oldest; pages with
+ * fewer than K references are evicted first, least recently used among them
+ * first.  This keeps pages that are referenced repeatedly ahead of pages
+ * that were touched once by a scan.
+ *
+ * Reference times are logical (one tick per pin).  Unpinned frames are kept
+ * in a binary heap ordered by their K-th reference time, so a victim is found
+ * in O(log n).  The history of evicted pages is retained for a while, so a
+ * page that returns soon is not treated as new.
+ */
+public class LRUK implements Replacer, GlobalConst {
+
+    /** K used by the constructor that does not take one. */
+    public static final int DEFAULT_K = 2;
+
+    private final int k;
+    private long now;
+
+    /** Page held by each frame. */
+    private int[] frame_pid;
+    private boolean[] pinned;
+
+    /** The last K reference times of each frame, most recent first. */
+    private long[] history;
+
+    /** Heap of unpinned frames; heap_pos is each frame's slot, or -1. */
+    private int[] heap;
+    private int[] heap_pos;
+    private int heap_size;
+
+    /** Histories of recently evicted pages, reused in FIFO order. */
+    private int[] retained_pid;
+    private long[] retained;
+    private PageTable retained_slot;
+    private int next_retained;
+
+    public LRUK(int numframes) {
+        this(numframes, DEFAULT_K);
+    }
+
+    /**
+     * Constructs an LRU-K policy.
+     *
+     * @param numframes number of frames in the buffer pool
+     * @param k         number of references remembered per page
+     * @throws IllegalArgumentException if k is less than 1
+     */
+    public LRUK(int numframes, int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("Invalid K for LRU-K");
+        }
+        this.k = k;
+        frame_pid = new int[0];
+        pinned = new boolean[0];
+        history = new long[0];
+        heap = new int[0];
+        heap_pos = new int[0];
+        retained_pid = new int[0];
+        retained = new long[0];
+        resize(numframes);
+    }
+
+    public synchronized void pin(int frame, int pid, boolean loaded) {
+        heapRemove(frame);
+        pinned[frame] = true;
+        int base = frame * k;
+        if (loaded) {
+            frame_pid[frame] = pid;
+            int slot = retained_slot.remove(pid);
+            if (slot != PageTable.INVALID_FRAME) {
+                System.arraycopy(retained, slot * k, history, base, k);
+                retained_pid[slot] = INVALID_PAGEID;
+            } else {
+                for (int i = 0; i < k; i++) {
+                    history[base + i] = 0;
+                }
+            }
+        }
+        System.arraycopy(history, base, history, base + 1, k - 1);
+        history[base] = ++now;
+    }
+
+    public synchronized void unpin(int frame) {
+        pinned[frame] = false;
+        heapInsert(frame);
+    }
+
+    public synchronized void free(int frame) {
+        heapRemove(frame);
+        frame_pid[frame] = INVALID_PAGEID;
+        pinned[frame] = false;
+    }
+
+    public synchronized void restore(int frame, int pid) {
+        if (frame_pid[frame] != pid) {
+            return;
+        }
+        // the page stays resident, so its retained history is stale
+        int slot = retained_slot.remove(pid);
+        if (slot != PageTable.INVALID_FRAME) {
+            retained_pid[slot] = INVALID_PAGEID;
+        }
+        if (!pinned[frame]) {
+            heapInsert(frame);
+        }
+    }
+
+    /**
+     * Resizes the per-frame arrays.  As many of the most recently retained
+     * histories are kept as fit.
+     */
+    public synchronized void resize(int numframes) {
+        int old = frame_pid.length;
+        frame_pid = Arrays.copyOf(frame_pid, numframes);
+        pinned = Arrays.copyOf(pinned, numframes);
+        history = Arrays.copyOf(history, numframes * k);
+        heap = Arrays.copyOf(heap, numframes);
+        heap_pos = Arrays.copyOf(heap_pos, numframes);
+        for (int i = old; i < numframes; i++) {
+            frame_pid[i] = INVALID_PAGEID;
+            heap_pos[i] = -1;
+        }
+
+        int[] old_pid = retained_pid;
+        long[] old_retained = retained;
+        int old_next = next_retained;
+        retained_pid = new int[numframes];
+        retained = new long[numframes * k];
+        retained_slot = new PageTable(numframes);
+        next_retained = 0;
+        Arrays.fill(retained_pid, INVALID_PAGEID);
+        // oldest first, so that the newest overwrite them if there is no room
+        for (int i = 0; i < old_pid.length; i++) {
+            int slot = (old_next + i) % old_pid.length;
+            if (old_pid[slot] != INVALID_PAGEID) {
+                int to = next_retained;
+                next_retained = (next_retained + 1) % numframes;
+                if (retained_pid[to] != INVALID_PAGEID) {
+                    retained_slot.remove(retained_pid[to]);
+                }
+                retained_pid[to] = old_pid[slot];
+                retained_slot.put(old_pid[slot], to);
+                System.arraycopy(old_retained, slot * k, retained, to * k, k);
+            }
+        }
+    }
+
+    public synchronized int pickVictim(int pid) {
+        if (heap_size == 0) {
+            throw new IllegalStateException("All frames are pinned");
+        }
+        int frame = heap[0];
+        heapRemove(frame);
+        retain(frame);
+        return frame;
+    }
+
+    /**
+     * Rates the frames in the order they would be evicted, pinned or not.
+     */
+    public synchronized int[] getHotness() {
+        Integer[] order = new Integer[frame_pid.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> before(a, b) ? -1 : before(b, a) ? 1 : 0);
+        int[] hot = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            hot[order[i]] = i + 1;
+        }
+        return hot;
+    }
+
+    /**
+     * Saves the history of the page being evicted from the frame.
+     */
+    private void retain(int frame) {
+        int slot = next_retained;
+        next_retained = (next_retained + 1) % retained_pid.length;
+        if (retained_pid[slot] != INVALID_PAGEID) {
+            retained_slot.remove(retained_pid[slot]);
+        }
+        retained_pid[slot] = frame_pid[frame];
+        retained_slot.put(frame_pid[frame], slot);
+        System.arraycopy(history, frame * k, retained, slot * k, k);
+    }
+
+    /**
+     * Returns true if frame a should be evicted before frame b.
+     */
+    private boolean before(int a, int b) {
+        long kth_a = history[a * k + k - 1];
+        long kth_b = history[b * k + k - 1];
+        if (kth_a != kth_b) {
+            return kth_a < kth_b;
+        }
+        return history[a * k] < history[b * k];
+    }
+
+    private void heapInsert(int frame) {
+        if (heap_pos[frame] >= 0) {
+            return;
+        }
+        heap[heap_size] = frame;
+        heap_pos[frame] = heap_size;
+        heap_size++;
+        siftUp(heap_pos[frame]);
+    }
+
+    private void heapRemove(int frame) {
+        int pos = heap_pos[frame];
+        if (pos < 0) {
+            return;
+        }
+        heap_pos[frame] = -1;
+        heap_size--;
+        if (pos == heap_size) {
+            return;
+        }
+        int last = heap[heap_size];
+        heap[pos] = last;
+        heap_pos[last] = pos;
+        siftUp(pos);
+        siftDown(heap_pos[last]);
+    }
+
+    private void siftUp(int pos) {
+        int frame = heap[pos];
+        while (pos > 0) {
+            int parent = (pos - 1) / 2;
+            if (!before(frame, heap[parent])) {
+                break;
+            }
+            heap[pos] = heap[parent];
+            heap_pos[heap[pos]] = pos;
+            pos = parent;
+        }
+        heap[pos] = frame;
+        heap_pos[frame] = pos;
+    }
+
+    private void siftDown(int pos) {
+        int frame = heap[pos];
+        while (true) {
+            int child = 2 * pos + 1;
+            if (child >= heap_size) {
+                break;
+            }
+            if (child + 1 < heap_size && before(heap[child + 1], heap[child])) {
+                child++;
+            }
+            if (!before(heap[child], frame)) {
+                break;
+            }
+            heap[pos] = heap[child];
+            heap_pos[heap[pos]] = pos;
+            pos = child;
+        }
+        heap[pos] = frame;
+        heap_pos[frame] = pos;
+    }
+
+} // public class LRUK implements Replacer, GlobalConst
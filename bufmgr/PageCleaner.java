@@ -0,0 +1,76 @@
+package bufmgr;
+
+/**
+ * Background thread that writes dirty unpinned pages, so that the buffer
+ * manager usually finds a clean victim on a miss.  Cleaning starts when the
+ * fraction of dirty frames rises above the high watermark and goes on until
+ * it falls to the low watermark.  Each round starts at the frame the
+ * replacement policy will look at next, so the pages written are those
+ * about to be evicted, and writes at most a fixed number of pages.
+ */
+class PageCleaner extends BackgroundWorker {
+
+    /** Shortest time between two rounds, in milliseconds. */
+    private static final long MIN_ROUND_MILLIS = 10;
+
+    private final BufMgr bufmgr;
+    private final long round_millis;
+    private final int pages_per_round;
+    private final double low_watermark;
+    private final double high_watermark;
+
+    /**
+     * Constructs a cleaner for the given buffer manager; call start to run it.
+     *
+     * @throws IllegalArgumentException if the rate or watermarks are invalid
+     */
+    PageCleaner(BufMgr bufmgr, int pages_per_sec, double low_watermark,
+            double high_watermark) {
+        super("PageCleaner");
+        if (pages_per_sec < 1) {
+            throw new IllegalArgumentException("Invalid page cleaner rate");
+        }
+        if (!(0 <= low_watermark && low_watermark <= high_watermark
+                && high_watermark <= 1)) {
+            throw new IllegalArgumentException("Invalid page cleaner watermarks");
+        }
+        this.bufmgr = bufmgr;
+        this.low_watermark = low_watermark;
+        this.high_watermark = high_watermark;
+        round_millis = Math.max(MIN_ROUND_MILLIS, 1000 / pages_per_sec);
+        pages_per_round = (int) Math.max(1, pages_per_sec * round_millis / 1000);
+    }
+
+    public void run() {
+        boolean cleaning = false;
+        while (isRunning()) {
+            // the pool may be resized while the cleaner runs
+            int numframes = bufmgr.getNumFrames();
+            int dirty = bufmgr.getNumDirty();
+            if (dirty > high_watermark * numframes) {
+                cleaning = true;
+            } else if (dirty <= low_watermark * numframes) {
+                cleaning = false;
+            }
+            if (cleaning) {
+                cleanRound(numframes);
+            }
+            pause(round_millis);
+        }
+    }
+
+    /**
+     * Writes up to pages_per_round pages, looking at each frame at most once.
+     */
+    private void cleanRound(int numframes) {
+        int index = bufmgr.getVictimHint();
+        int written = 0;
+        for (int i = 0; i < numframes && written < pages_per_round && isRunning(); i++) {
+            if (bufmgr.cleanFrame(index)) {
+                written++;
+            }
+            index = (index + 1) % numframes;
+        }
+    }
+
+} // class PageCleaner extends BackgroundWorker
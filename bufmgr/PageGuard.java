@@ -0,0 +1,88 @@
+package bufmgr;
+
+import global.GlobalConst;
+import global.Page;
+import global.PageId;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A page pinned by BufMgr.pinGuarded.  Closing the guard unpins the page,
+ * after releasing its content latch if it was latched, so that a block
+ * opened with try-with-resources cannot leave the page pinned on any path:
+ *
+ *   try (PageGuard guard = bufmgr.pinGuarded(pid, page, PIN_DISKIO)) {
+ *       ... read or change page ...
+ *       guard.markDirty();
+ *   }
+ *
+ * The guard remembers the frame of its page, so unpinning through it does
+ * not search the page table again; only the latch of the page's stripe is
+ * taken.  A guard is meant to be used by the thread that pinned the page
+ * and is not thread-safe.
+ */
+public final class PageGuard implements AutoCloseable, GlobalConst {
+
+    private final BufMgr bufmgr;
+    private final int pid;
+    private final int index;
+    private final Page page;
+
+    // the content latch held and its stamp, or null if not latched
+    private final StampedLock content;
+    private final long stamp;
+
+    private boolean dirty;
+    private boolean closed;
+
+    PageGuard(BufMgr bufmgr, int pid, int index, Page page, StampedLock content, long stamp) {
+        this.bufmgr = bufmgr;
+        this.pid = pid;
+        this.index = index;
+        this.page = page;
+        this.content = content;
+        this.stamp = stamp;
+    }
+
+    /**
+     * Gets the page, which refers to the frame it is pinned in.
+     */
+    public Page getPage() {
+        return page;
+    }
+
+    /**
+     * Gets the id of the page.
+     */
+    public PageId getPageId() {
+        return new PageId(pid);
+    }
+
+    /**
+     * Notes that the page was modified, so that it is unpinned dirty.
+     *
+     * @throws IllegalStateException if the guard is closed
+     */
+    public void markDirty() {
+        if (closed) {
+            throw new IllegalStateException("Page guard is closed");
+        }
+        dirty = true;
+    }
+
+    /**
+     * Releases the latch, if any, and unpins the page, dirty if markDirty
+     * was called.  Closing the guard again does nothing.
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (content != null) {
+            content.unlock(stamp);
+        }
+        bufmgr.unpinGuarded(pid, index, dirty ? UNPIN_DIRTY : UNPIN_CLEAN);
+    }
+
+} // public final class PageGuard implements AutoCloseable, GlobalConst
@@ -0,0 +1,187 @@
+package bufmgr;
+
+import global.GlobalConst;
+
+/**
+ * Maps disk page numbers to buffer pool frame indexes.
+ *
+ * This is an open-addressing hash table over two parallel int arrays, so
+ * lookups never box the page number and never allocate.  Collisions are
+ * resolved by linear probing; deletes shift the following entries of the
+ * probe run back, so no tombstones are left behind.  The table is sized from
+ * the number of frames and doubles whenever it becomes half full.
+ *
+ * A PageTable is not thread-safe; StripedPageTable guards each one with a
+ * latch.
+ */
+class PageTable implements GlobalConst {
+
+    /** Returned by get and remove when the page is not in the table. */
+    static final int INVALID_FRAME = -1;
+
+    /** Smallest capacity the table will use. */
+    private static final int MIN_CAPACITY = 16;
+
+    private int[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    /**
+     * Constructs a page table able to hold one entry per frame.
+     *
+     * @param numframes number of frames in the buffer pool
+     */
+    PageTable(int numframes) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < numframes * 2) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            keys[i] = INVALID_PAGEID;
+        }
+    }
+
+    /**
+     * Spreads the page number so that runs of consecutive pages do not
+     * cluster into a single probe sequence.
+     */
+    static int hash(int pid) {
+        int h = pid * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Gets the frame holding the given page.
+     *
+     * @return frame index, or INVALID_FRAME if the page is not in the table
+     */
+    int get(int pid) {
+        for (int i = hash(pid) & mask; ; i = (i + 1) & mask) {
+            int key = keys[i];
+            if (key == pid) {
+                return values[i];
+            }
+            if (key == INVALID_PAGEID) {
+                return INVALID_FRAME;
+            }
+        }
+    }
+
+    /**
+     * Gets the frame that may hold the given page, without the latch of the
+     * table.  A put or remove running meanwhile can make the answer wrong or
+     * stale, but never makes the lookup fail or loop, so the caller must
+     * check the frame before trusting it.
+     *
+     * @return frame index, or INVALID_FRAME if the page was not found
+     */
+    int find(int pid) {
+        // a rehash replaces the arrays and the mask one after another
+        int[] keys = this.keys;
+        int[] values = this.values;
+        int mask = keys.length - 1;
+        for (int i = hash(pid) & mask, n = 0; n < keys.length; i = (i + 1) & mask, n++) {
+            int key = keys[i];
+            if (key == pid) {
+                return (i < values.length) ? values[i] : INVALID_FRAME;
+            }
+            if (key == INVALID_PAGEID) {
+                return INVALID_FRAME;
+            }
+        }
+        return INVALID_FRAME;
+    }
+
+    /**
+     * Maps the given page to the given frame, replacing any previous mapping.
+     *
+     * @throws IllegalArgumentException if pid is not a valid page number
+     */
+    void put(int pid, int frame) {
+        if (pid < 0) {
+            throw new IllegalArgumentException("Invalid page number");
+        }
+        int i = hash(pid) & mask;
+        while (keys[i] != INVALID_PAGEID) {
+            if (keys[i] == pid) {
+                values[i] = frame;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = pid;
+        values[i] = frame;
+        size++;
+        if (size * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+    }
+
+    /**
+     * Moves every entry into a table of the given capacity.
+     */
+    private void rehash(int capacity) {
+        int[] old_keys = keys;
+        int[] old_values = values;
+        allocate(capacity);
+        for (int j = 0; j < old_keys.length; j++) {
+            if (old_keys[j] != INVALID_PAGEID) {
+                int i = hash(old_keys[j]) & mask;
+                while (keys[i] != INVALID_PAGEID) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = old_keys[j];
+                values[i] = old_values[j];
+            }
+        }
+    }
+
+    /**
+     * Removes the mapping for the given page.
+     *
+     * @return the frame the page was mapped to, or INVALID_FRAME
+     */
+    int remove(int pid) {
+        int i = hash(pid) & mask;
+        while (keys[i] != pid) {
+            if (keys[i] == INVALID_PAGEID) {
+                return INVALID_FRAME;
+            }
+            i = (i + 1) & mask;
+        }
+        int frame = values[i];
+        size--;
+
+        // shift back every later entry of the run whose home slot is not
+        // cyclically between the hole and its current position
+        int hole = i;
+        for (int j = (hole + 1) & mask; keys[j] != INVALID_PAGEID; j = (j + 1) & mask) {
+            int home = hash(keys[j]) & mask;
+            boolean stays = (hole <= j) ? (hole < home && home <= j)
+                                        : (hole < home || home <= j);
+            if (!stays) {
+                keys[hole] = keys[j];
+                values[hole] = values[j];
+                hole = j;
+            }
+        }
+        keys[hole] = INVALID_PAGEID;
+        return frame;
+    }
+
+    /**
+     * Gets the number of pages in the table.
+     */
+    int size() {
+        return size;
+    }
+
+} // class PageTable implements GlobalConst
@@ -0,0 +1,343 @@
+package bufmgr;
+
+import global.Minibase;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Manages the buffer pools of the database.  Besides the default pool,
+ * Minibase.BufferManager, named pools may be created, each with its own size
+ * and replacement policy, and files of the disk manager's file library may be
+ * assigned to them, so that e.g. a large archive file does not evict the
+ * pages of a hot index.  A small pool of its own holds the header and space
+ * map pages of the disk manager, which therefore stay resident however busy
+ * the other pools are.
+ *
+ * Checkpoints cover every pool: each writes the pages dirty when the
+ * checkpoint begins, i.e. changed and unpinned, in batches so that pins go on meanwhile, and the
+ * completed checkpoint is then recorded in the first page of the database.
+ * They may be taken on demand or by a background thread.
+ *
+ * The pages resident in the default pool are listed in the database when
+ * it is closed, and optionally at each checkpoint, with their hotness; when
+ * the database is opened again, the hottest are loaded back in the
+ * background.
+ *
+ * A page is cached by whichever pool it is pinned through, so every page of
+ * a file must be pinned, allocated and freed through the pool of its file;
+ * getFilePool gives that pool.
+ */
+public class PoolMgr {
+
+    /** Name of the default pool. */
+    public static final String DEFAULT_POOL = "default";
+
+    /** Name of the pool of the disk manager's own pages. */
+    public static final String METADATA_POOL = "metadata";
+
+    /** Number of frames of the metadata pool. */
+    public static final int METADATA_FRAMES = 16;
+
+    private final Map<String, BufMgr> pools = new ConcurrentHashMap<>();
+
+    // pool name of each assigned file, by lower case file name, since the
+    // file library ignores case
+    private final Map<String, String> file_pools = new ConcurrentHashMap<>();
+
+    private final BufMgr default_pool;
+    private final BufMgr metadata_pool;
+
+    // serializes checkpoints
+    private final Object checkpoint_latch = new Object();
+    private Checkpointer checkpointer;
+
+    // whether checkpoints also list the resident pages
+    private volatile boolean checkpoint_resident;
+
+    private WarmUp warm_up;
+
+    /**
+     * Constructs the pool manager around the default pool, creating the
+     * metadata pool.
+     */
+    public PoolMgr(BufMgr default_pool) {
+        this.default_pool = default_pool;
+        metadata_pool = new BufMgr(METADATA_FRAMES);
+        pools.put(DEFAULT_POOL, default_pool);
+        pools.put(METADATA_POOL, metadata_pool);
+    }
+
+    /**
+     * Creates a named pool.
+     *
+     * @param numframes         number of frames in the pool
+     * @param replacementPolicy name of the replacement policy, see BufMgr
+     * @param offHeap           true to hold the frames outside the Java heap
+     * @return the new pool
+     * @throws IllegalArgumentException if the name is in use, the size is
+     *                                  invalid or the policy is unknown
+     */
+    public synchronized BufMgr createPool(String name, int numframes,
+            String replacementPolicy, boolean offHeap) {
+        if (pools.containsKey(name)) {
+            throw new IllegalArgumentException("Buffer pool already exists: " + name);
+        }
+        if (numframes < 1) {
+            throw new IllegalArgumentException("Invalid number of frames");
+        }
+        BufMgr pool = new BufMgr(numframes, replacementPolicy, offHeap);
+        pools.put(name, pool);
+        return pool;
+    }
+
+    /**
+     * Drops a named pool after writing its dirty pages.
+     *
+     * @throws IllegalArgumentException if the pool is unknown, is the
+     *                                  default or metadata pool, or has
+     *                                  files assigned to it
+     * @throws IllegalStateException    if the pool has pinned pages
+     */
+    public synchronized void dropPool(String name) {
+        BufMgr pool = getPool(name);
+        if (pool == default_pool || pool == metadata_pool) {
+            throw new IllegalArgumentException("Cannot drop buffer pool: " + name);
+        }
+        if (file_pools.containsValue(name)) {
+            throw new IllegalArgumentException("Files are assigned to buffer pool: " + name);
+        }
+        if (pool.getNumUnpinned() != pool.getNumFrames()) {
+            throw new IllegalStateException("Buffer pool has pinned pages: " + name);
+        }
+        close(pool);
+        pool.unregisterMBean();
+        pools.remove(name);
+    }
+
+    /**
+     * Gets the pool with the given name.
+     *
+     * @throws IllegalArgumentException if there is no such pool
+     */
+    public BufMgr getPool(String name) {
+        BufMgr pool = pools.get(name);
+        if (pool == null) {
+            throw new IllegalArgumentException("Unknown buffer pool: " + name);
+        }
+        return pool;
+    }
+
+    /**
+     * Gets the names of all pools.
+     */
+    public String[] getPoolNames() {
+        return pools.keySet().toArray(new String[0]);
+    }
+
+    /**
+     * Gets the pool of the disk manager's header and space map pages.
+     */
+    public BufMgr getMetadataPool() {
+        return metadata_pool;
+    }
+
+    /**
+     * Assigns a file of the file library to a pool.  If the file was
+     * assigned to another pool, that pool is flushed and its unpinned pages
+     * are dropped, so that it keeps no copy of the file's pages to fall
+     * behind the ones cached by the new pool.  The pool only knows pages,
+     * not files, so the pages of its other files are dropped as well.  If
+     * the file leaves the default pool, loading its listed pages is stopped
+     * first, so that the warm-up cannot bring the file's pages back after
+     * they are dropped.
+     *
+     * @throws IllegalArgumentException if the pool is unknown or is the
+     *                                  metadata pool, or the file is not in
+     *                                  the library
+     */
+    public synchronized void assignFile(String fname, String pool_name) {
+        BufMgr pool = getPool(pool_name);
+        if (pool == metadata_pool) {
+            throw new IllegalArgumentException("Files cannot use the metadata pool");
+        }
+        if (Minibase.DiskManager.get_file_entry(fname) == null) {
+            throw new IllegalArgumentException("File entry not found in library: " + fname);
+        }
+        BufMgr old = getFilePool(fname);
+        if (old != pool) {
+            if (old == default_pool) {
+                stopWarmUp();
+            }
+            old.evictAllFrames();
+        }
+        file_pools.put(fname.toLowerCase(), pool_name);
+    }
+
+    /**
+     * Returns a file to the default pool, e.g. when it is deleted from the
+     * file library.  The pages of the pool it leaves are dropped as by
+     * assignFile; a file assigned to the default pool by name stays where
+     * it is.
+     */
+    public void unassignFile(String fname) {
+        String name = file_pools.remove(fname.toLowerCase());
+        if (name != null) {
+            BufMgr old = pools.get(name);
+            if (old != null && old != default_pool) {
+                old.evictAllFrames();
+            }
+        }
+    }
+
+    /**
+     * Gets the pool a file's pages are cached in: the one it is assigned
+     * to, or else the default pool.
+     */
+    public BufMgr getFilePool(String fname) {
+        String name = file_pools.get(fname.toLowerCase());
+        return (name != null) ? getPool(name) : default_pool;
+    }
+
+    /**
+     * Takes a fuzzy checkpoint of every pool; see BufMgr.checkpoint.  Once
+     * the pages of the files are written, the header and space map pages
+     * are, and the checkpoint is then recorded in the first page of the
+     * database: every page changed and unpinned before it began is on
+     * disk.  Changes made through pins held when it began are not covered.
+     *
+     * @param batch_pages  most pages a pool writes between two pauses
+     * @param pause_millis length of the pauses
+     * @return the number of the checkpoint
+     * @throws IllegalArgumentException if the batch or pause is invalid
+     */
+    public int checkpoint(int batch_pages, long pause_millis) {
+        synchronized (checkpoint_latch) {
+            long begin_time = System.currentTimeMillis();
+            for (BufMgr pool : pools.values()) {
+                if (pool != metadata_pool) {
+                    pool.checkpoint(batch_pages, pause_millis);
+                }
+            }
+            if (checkpoint_resident) {
+                saveResidentPages();
+            }
+            metadata_pool.flushAllFrames();
+            return Minibase.DiskManager.write_checkpoint(begin_time);
+        }
+    }
+
+    /**
+     * Starts a background thread that takes a checkpoint at a fixed
+     * interval.
+     *
+     * @param interval_millis time between the end of a checkpoint and the
+     *                        start of the next
+     * @param batch_pages     most pages a pool writes between two pauses
+     * @param pause_millis    length of the pauses
+     * @throws IllegalArgumentException if the interval or batches are invalid
+     * @throws IllegalStateException if the checkpointer is already running
+     */
+    public synchronized void startCheckpointer(long interval_millis, int batch_pages,
+            long pause_millis) {
+        if (checkpointer != null) {
+            throw new IllegalStateException("Checkpointer is already running");
+        }
+        checkpointer = new Checkpointer(this, interval_millis, batch_pages, pause_millis);
+        checkpointer.start();
+    }
+
+    /**
+     * Stops the background checkpointer, if running, and waits for it to
+     * finish.
+     */
+    public synchronized void stopCheckpointer() {
+        if (checkpointer != null) {
+            checkpointer.shutdown();
+            checkpointer = null;
+        }
+    }
+
+    /**
+     * Sets whether checkpoints also list the pages resident in the default
+     * pool, so that they are loaded again after a crash as well as after
+     * the database was closed.
+     */
+    public void setCheckpointResidentPages(boolean enabled) {
+        checkpoint_resident = enabled;
+    }
+
+    /**
+     * Lists the pages resident in the default pool in the database, to be
+     * loaded again when it is next opened.
+     */
+    public void saveResidentPages() {
+        Minibase.DiskManager.write_resident_pages(default_pool.getResidentPages());
+    }
+
+    /**
+     * Starts loading the pages listed by saveResidentPages into the default
+     * pool in the background, if not already doing so.  Called when the
+     * database is opened.
+     */
+    public synchronized void startWarmUp() {
+        if (warm_up == null || !warm_up.isAlive()) {
+            warm_up = new WarmUp(default_pool);
+            warm_up.start();
+        }
+    }
+
+    /**
+     * Returns true while the listed pages are being loaded.
+     */
+    public synchronized boolean isWarmingUp() {
+        return warm_up != null && warm_up.isAlive();
+    }
+
+    /**
+     * Stops loading the listed pages, if still doing so, and waits for the
+     * read in progress.
+     */
+    public synchronized void stopWarmUp() {
+        if (warm_up != null) {
+            warm_up.shutdown();
+            warm_up = null;
+        }
+    }
+
+    /**
+     * Writes the dirty pages of every pool.
+     */
+    public void flushAllPools() {
+        for (BufMgr pool : pools.values()) {
+            if (pool != metadata_pool) {
+                pool.flushAllFrames();
+            }
+        }
+        metadata_pool.flushAllFrames();
+    }
+
+    /**
+     * Stops the checkpointer and the background threads of every pool,
+     * lists the pages resident in the default pool, and writes the dirty
+     * pages of every pool, before the database is closed.
+     */
+    public void closeAllPools() {
+        stopCheckpointer();
+        stopWarmUp();
+        saveResidentPages();
+        for (BufMgr pool : pools.values()) {
+            if (pool != metadata_pool) {
+                close(pool);
+            }
+        }
+        close(metadata_pool);
+    }
+
+    private static void close(BufMgr pool) {
+        pool.stopCleaner();
+        pool.stopReadAhead();
+        pool.flushAllFrames();
+    }
+
+} // public class PoolMgr
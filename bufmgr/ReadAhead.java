@@ -0,0 +1,185 @@
+package bufmgr;
+
+import global.PageId;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Detects streams of pins in ascending page order and reads the pages after
+ * them ahead of time.  A few streams are tracked at once, each by the page
+ * it is expected to pin next, so interleaved scans are each recognized.
+ * Once a stream has used up half of the pages read ahead for it, the next
+ * window is requested, so the reads stay ahead of the scan.
+ *
+ * Every pin for reading is noted, so the streams are split by region of
+ * the database among detectors with a lock each, as the page table is split
+ * into stripes; pins of different regions never wait for each other.  A
+ * stream that crosses into the next region starts again there with a small
+ * window.
+ *
+ * Pages are read by a single background thread through BufMgr.prefetch,
+ * which reads each window with as few disk requests as it can and only
+ * uses free or clean frames.
+ */
+class ReadAhead {
+
+    /** Number of streams tracked at once by each detector. */
+    private static final int NUM_STREAMS = 8;
+
+    /** Pages read ahead the first time a stream is recognized. */
+    private static final int INITIAL_WINDOW = 4;
+
+    /** Pages of each region; a power of two. */
+    private static final int REGION_PAGES = 1024;
+
+    private static final int REGION_SHIFT = Integer.numberOfTrailingZeros(REGION_PAGES);
+
+    private final BufMgr bufmgr;
+    private final int max_window;
+    private final ExecutorService reader;
+
+    /** Largest window a stream may grow to, adapted to waste and hits. */
+    private final AtomicInteger window_limit;
+
+    /** Detectors of the regions, taken in turn; a power of two. */
+    private final Detector[] detectors;
+
+    /**
+     * Constructs the read-ahead of the given buffer manager.
+     *
+     * @throws IllegalArgumentException if max_window is less than 1
+     */
+    ReadAhead(BufMgr bufmgr, int max_window) {
+        if (max_window < 1) {
+            throw new IllegalArgumentException("Invalid read-ahead window");
+        }
+        this.bufmgr = bufmgr;
+        this.max_window = max_window;
+        window_limit = new AtomicInteger(max_window);
+        detectors = new Detector[Integer.highestOneBit(
+            4 * Runtime.getRuntime().availableProcessors())];
+        for (int i = 0; i < detectors.length; i++) {
+            detectors[i] = new Detector();
+        }
+        reader = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "ReadAhead");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Notes that a page is being pinned for reading, and reads ahead if it
+     * continues a stream.
+     */
+    void access(int pid) {
+        detectors[(pid >>> REGION_SHIFT) & (detectors.length - 1)].access(pid);
+    }
+
+    /**
+     * Notes that a page read ahead was pinned.
+     */
+    void hit() {
+        window_limit.updateAndGet(limit -> Math.min(limit + 1, max_window));
+    }
+
+    /**
+     * Notes that a page read ahead was evicted without being pinned.
+     */
+    void wasted() {
+        window_limit.updateAndGet(limit -> Math.max(1, limit / 2));
+    }
+
+    /**
+     * Stops reading ahead and waits for the reads already requested.
+     */
+    void shutdown() {
+        reader.shutdown();
+        boolean interrupted = false;
+        while (!reader.isTerminated()) {
+            try {
+                reader.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException exc) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Streams of the regions that share a detector.
+     */
+    private class Detector {
+
+        /** Per stream: next page expected, first page not yet requested,
+         * and current window; a stream with next_pid INVALID is unused. */
+        private final int[] next_pid = new int[NUM_STREAMS];
+        private final int[] fetched_to = new int[NUM_STREAMS];
+        private final int[] window = new int[NUM_STREAMS];
+
+        /** Per stream: when it was last used, to pick one to replace. */
+        private final long[] last_use = new long[NUM_STREAMS];
+        private long now;
+
+        Detector() {
+            for (int s = 0; s < NUM_STREAMS; s++) {
+                next_pid[s] = -1;
+            }
+        }
+
+        synchronized void access(int pid) {
+            now++;
+            int s = 0;
+            while (s < NUM_STREAMS && next_pid[s] != pid) {
+                s++;
+            }
+            if (s == NUM_STREAMS) {
+                // not sequential (yet): start tracking a stream from this page
+                s = leastRecent();
+                next_pid[s] = pid + 1;
+                fetched_to[s] = pid + 1;
+                window[s] = 0;
+                last_use[s] = now;
+                return;
+            }
+
+            next_pid[s] = pid + 1;
+            last_use[s] = now;
+            int limit = window_limit.get();
+            if (window[s] == 0) {
+                window[s] = Math.min(INITIAL_WINDOW, limit);
+            } else if (fetched_to[s] - pid - 1 > window[s] / 2) {
+                return;
+            } else {
+                window[s] = Math.min(2 * window[s], limit);
+            }
+
+            final int from = Math.max(fetched_to[s], pid + 1);
+            final int to = pid + 1 + window[s];
+            if (from < to) {
+                fetched_to[s] = to;
+                reader.execute(() -> bufmgr.prefetch(new PageId(from), to - from));
+            }
+        }
+
+        /**
+         * Gets the stream used least recently.
+         */
+        private int leastRecent() {
+            int oldest = 0;
+            for (int s = 1; s < NUM_STREAMS; s++) {
+                if (last_use[s] < last_use[oldest]) {
+                    oldest = s;
+                }
+            }
+            return oldest;
+        }
+
+    } // private class Detector
+
+} // class ReadAhead
@@ -0,0 +1,80 @@
+package bufmgr;
+
+/**
+ * Replacement policy used by the buffer manager to choose which frame to
+ * reuse when the pool is full.
+ *
+ * The buffer manager tells the policy about every pin, about frames whose
+ * last pin is released, and about frames whose page is freed; the policy
+ * keeps whatever state it needs from these calls and never looks at the
+ * frame table.  Frames that hold no page are managed by the buffer manager
+ * and are only seen by the policy once a page is pinned in them.
+ *
+ * Calls may come from several threads.  Calls about one page are never made
+ * concurrently, but a frame chosen by pickVictim may be pinned, unpinned or
+ * freed by another thread before the buffer manager gets to evict it, so a
+ * policy must accept calls in any of those orders.
+ */
+public interface Replacer {
+
+    /**
+     * Called each time a page is pinned.
+     *
+     * @param frame  index of the frame holding the page
+     * @param pid    page number of the page
+     * @param loaded true if the page was just brought into the frame, false
+     *               if it was already resident
+     */
+    void pin(int frame, int pid, boolean loaded);
+
+    /**
+     * Called when the last pin on a frame is released, i.e. the frame may
+     * now be chosen as a victim.
+     */
+    void unpin(int frame);
+
+    /**
+     * Chooses an unpinned frame to evict so that it can hold another page.
+     * The chosen frame is no longer a candidate until it is restored or
+     * unpinned again.
+     *
+     * @param pid page number of the page that will be brought in
+     * @return index of the frame to evict
+     * @throws IllegalStateException if all frames are pinned
+     */
+    int pickVictim(int pid);
+
+    /**
+     * Called when the page in a frame is freed, when a frame returned by
+     * pickVictim could not be used, and when a frame is taken for another
+     * page.  The frame holds no page afterwards.
+     */
+    void free(int frame);
+
+    /**
+     * Called when a frame returned by pickVictim was not evicted after all,
+     * because its page was pinned or latched by another thread in the
+     * meantime.  If the frame still holds page pid it becomes a candidate
+     * again once it is unpinned; otherwise the call is ignored.
+     */
+    void restore(int frame, int pid);
+
+    /**
+     * Called when the buffer pool grows or shrinks, while no other call is
+     * in progress.  When it shrinks, the frames numbered numframes and above
+     * have all been freed first.
+     *
+     * @param numframes new number of frames in the buffer pool
+     */
+    void resize(int numframes);
+
+    /**
+     * Rates how much the policy wants to keep the page in each frame, e.g.
+     * to choose which pages to load again after a restart.
+     *
+     * @return for each frame, a value that is higher the longer its page
+     *         would be kept; frames that hold no page may have any value
+     */
+    int[] getHotness();
+
+} // public interface Replacer
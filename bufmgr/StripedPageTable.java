@@ -0,0 +1,165 @@
+package bufmgr;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Page table split into independently latched stripes, so that threads
+ * pinning different pages rarely wait for each other.  A page always hashes
+ * to the same stripe; callers latch the stripe of a page before using get,
+ * put or remove for it.  Only find may be used without the latch.
+ *
+ * The latch of a page's stripe also serializes every change to the frame
+ * that holds the page: loading it, pinning it through the table, and
+ * evicting it.
+ */
+class StripedPageTable {
+
+    private final PageTable[] tables;
+    private final ReentrantLock[] latches;
+    private final int shift;
+
+    // set while lockAll is waiting for every stripe; lock waits on the gate
+    private volatile boolean all_wanted;
+    private final Object gate = new Object();
+
+    /**
+     * Constructs a table for the given pool size.  The number of stripes is
+     * a power of two scaled to the number of processors, but never more
+     * than there are frames.
+     */
+    StripedPageTable(int numframes) {
+        int wanted = Math.min(Math.max(1, numframes),
+            16 * Runtime.getRuntime().availableProcessors());
+        int numstripes = Integer.highestOneBit(wanted);
+        tables = new PageTable[numstripes];
+        latches = new ReentrantLock[numstripes];
+        for (int i = 0; i < numstripes; i++) {
+            tables[i] = new PageTable(numframes / numstripes + 1);
+            latches[i] = new ReentrantLock();
+        }
+        // stripes are chosen by the high bits of the hash, slots by the low
+        shift = 32 - Integer.numberOfTrailingZeros(numstripes);
+    }
+
+    private int stripe(int pid) {
+        return shift == 32 ? 0 : PageTable.hash(pid) >>> shift;
+    }
+
+    /**
+     * Gets the latch guarding the given page.
+     */
+    ReentrantLock latch(int pid) {
+        return latches[stripe(pid)];
+    }
+
+    /**
+     * Latches the stripe of the given page.  While lockAll is waiting for
+     * every stripe, the caller waits for it to finish first, so that it
+     * cannot be kept out by a stream of new latches; the caller must
+     * therefore hold no other stripe latch.
+     *
+     * @return false if the caller had to wait
+     */
+    boolean lock(int pid) {
+        boolean waited = false;
+        if (all_wanted) {
+            awaitAll();
+            waited = true;
+        }
+        ReentrantLock latch = latch(pid);
+        if (latch.tryLock()) {
+            return !waited;
+        }
+        latch.lock();
+        return false;
+    }
+
+    private void awaitAll() {
+        boolean interrupted = false;
+        synchronized (gate) {
+            while (all_wanted) {
+                try {
+                    gate.wait();
+                } catch (InterruptedException exc) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Latches every stripe, so that no page is loaded, pinned or evicted
+     * until unlockAll.  Only one thread may call it at a time.
+     *
+     * The latches are only tried, and all are let go again if one is busy:
+     * the thread holding it may be trying the others to evict a page, and
+     * would give up if it found them all held.  New callers of lock wait
+     * meanwhile, so the busy latches are soon released.
+     */
+    void lockAll() {
+        all_wanted = true;
+        while (!tryLockAll()) {
+            Thread.yield();
+        }
+    }
+
+    private boolean tryLockAll() {
+        for (int i = 0; i < latches.length; i++) {
+            if (!latches[i].tryLock()) {
+                while (--i >= 0) {
+                    latches[i].unlock();
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Releases the latches taken by lockAll.
+     */
+    void unlockAll() {
+        for (int i = latches.length - 1; i >= 0; i--) {
+            latches[i].unlock();
+        }
+        synchronized (gate) {
+            all_wanted = false;
+            gate.notifyAll();
+        }
+    }
+
+    /**
+     * Gets the frame holding the given page, or INVALID_FRAME.
+     */
+    int get(int pid) {
+        return tables[stripe(pid)].get(pid);
+    }
+
+    /**
+     * Gets the frame that may hold the given page, without its latch; see
+     * PageTable.find.
+     */
+    int find(int pid) {
+        return tables[stripe(pid)].find(pid);
+    }
+
+    /**
+     * Maps the given page to the given frame.
+     */
+    void put(int pid, int frame) {
+        tables[stripe(pid)].put(pid, frame);
+    }
+
+    /**
+     * Removes the mapping for the given page.
+     *
+     * @return the frame the page was mapped to, or INVALID_FRAME
+     */
+    int remove(int pid) {
+        return tables[stripe(pid)].remove(pid);
+    }
+
+} // class StripedPageTable
@@ -0,0 +1,129 @@
+package bufmgr;
+
+import global.GlobalConst;
+
+import java.util.Arrays;
+
+/**
+ * Full 2Q replacement policy (Johnson and Shasha).  Pages seen for the first
+ * time go to a FIFO queue, A1in.  When they are evicted from it their page
+ * numbers are remembered in a ghost queue, A1out, and only a page that is
+ * referenced again while in A1out is admitted to the main LRU queue, Am.
+ * A single pass over a large file therefore cycles through A1in without
+ * displacing the pages in Am.
+ */
+public class TwoQ implements Replacer, GlobalConst {
+
+    /** Resident pages referenced once, in arrival order. */
+    private final FrameList a1in;
+
+    /** Resident pages referenced again after eviction, least recent first. */
+    private final FrameList am;
+
+    /** Page numbers recently evicted from A1in. */
+    private final GhostList a1out;
+
+    /** Target size of A1in. */
+    private int kin;
+
+    private int[] frame_pid;
+    private boolean[] pinned;
+
+    public TwoQ(int numframes) {
+        a1in = new FrameList(numframes);
+        am = new FrameList(numframes);
+        a1out = new GhostList(numframes / 2);
+        kin = Math.max(1, numframes / 4);
+        frame_pid = new int[numframes];
+        pinned = new boolean[numframes];
+    }
+
+    public synchronized void pin(int frame, int pid, boolean loaded) {
+        pinned[frame] = true;
+        if (loaded) {
+            frame_pid[frame] = pid;
+            if (a1out.remove(pid)) {
+                am.addLast(frame);
+            } else {
+                a1in.addLast(frame);
+            }
+        } else if (am.remove(frame)) {
+            am.addLast(frame);
+        }
+    }
+
+    public synchronized void unpin(int frame) {
+        pinned[frame] = false;
+    }
+
+    public synchronized void free(int frame) {
+        a1in.remove(frame);
+        am.remove(frame);
+        frame_pid[frame] = INVALID_PAGEID;
+        pinned[frame] = false;
+    }
+
+    public synchronized void restore(int frame, int pid) {
+        if (frame_pid[frame] != pid || a1in.contains(frame) || am.contains(frame)) {
+            return;
+        }
+        if (a1out.remove(pid)) {
+            a1in.addLast(frame);
+        } else {
+            am.addLast(frame);
+        }
+    }
+
+    public synchronized void resize(int numframes) {
+        a1in.resize(numframes);
+        am.resize(numframes);
+        a1out.resize(numframes / 2);
+        kin = Math.max(1, numframes / 4);
+        frame_pid = Arrays.copyOf(frame_pid, numframes);
+        pinned = Arrays.copyOf(pinned, numframes);
+    }
+
+    public synchronized int pickVictim(int pid) {
+        int frame = FrameList.NONE;
+        if (a1in.size() > kin) {
+            frame = firstUnpinned(a1in);
+        }
+        if (frame == FrameList.NONE) {
+            frame = firstUnpinned(am);
+        }
+        if (frame == FrameList.NONE) {
+            frame = firstUnpinned(a1in);
+        }
+        if (frame == FrameList.NONE) {
+            throw new IllegalStateException("All frames are pinned");
+        }
+        if (a1in.remove(frame)) {
+            a1out.add(frame_pid[frame]);
+        } else {
+            am.remove(frame);
+        }
+        return frame;
+    }
+
+    /**
+     * Rates the frames of A1in in arrival order, then those of Am from
+     * least to most recently used.
+     */
+    public synchronized int[] getHotness() {
+        int[] hot = new int[pinned.length];
+        am.rank(hot, a1in.rank(hot, 0));
+        return hot;
+    }
+
+    /**
+     * Gets the oldest unpinned frame in the queue, or NONE.
+     */
+    private int firstUnpinned(FrameList queue) {
+        int frame = queue.first();
+        while (frame != FrameList.NONE && pinned[frame]) {
+            frame = queue.next(frame);
+        }
+        return frame;
+    }
+
+} // public class TwoQ implements Replacer, GlobalConst
@@ -0,0 +1,48 @@
+package bufmgr;
+
+import global.Minibase;
+import global.PageId;
+
+import java.util.Arrays;
+
+/**
+ * Background thread that loads the pages listed when the database was last
+ * closed back into a buffer pool.  As many of the hottest pages as the pool
+ * has frames are read, in page order and with a disk request per run of
+ * consecutive pages, through BufMgr.prefetch, so that pins meanwhile are
+ * never kept waiting for a frame.  prefetch splits long runs, so a pin waits
+ * for one short read at most.
+ */
+class WarmUp extends BackgroundWorker {
+
+    private final BufMgr pool;
+
+    /**
+     * Constructs the warm-up of the given pool; call start to run it.
+     */
+    WarmUp(BufMgr pool) {
+        super("WarmUp");
+        this.pool = pool;
+    }
+
+    public void run() {
+        long[] entries = Minibase.DiskManager.read_resident_pages();
+
+        // the hottest pages come first; load those that fit in page order
+        int count = Math.min(entries.length, pool.getNumFrames());
+        int[] pids = new int[count];
+        for (int i = 0; i < count; i++) {
+            pids[i] = (int) entries[i];
+        }
+        Arrays.sort(pids);
+        for (int i = 0; isRunning() && i < count; ) {
+            int j = i + 1;
+            while (j < count && pids[j] == pids[j - 1] + 1) {
+                j++;
+            }
+            pool.prefetch(new PageId(pids[i]), j - i);
+            i = j;
+        }
+    }
+
+} // class WarmUp extends BackgroundWorker
@@ -10,6 +10,21 @@ class DBFirstPage extends DBHeaderPage {
   /** Offest for the total number of pages. */
   protected static final int NUM_DB_PAGE = PAGE_SIZE - 4;
 
+  /** Offset of the number of the last checkpoint. */
+  protected static final int CHECKPOINT_ID = NUM_DB_PAGE - 4;
+
+  /** Offset of the time the last checkpoint began, in two halves. */
+  protected static final int CHECKPOINT_TIME = CHECKPOINT_ID - 8;
+
+  /** Offset of the first page of the list of resident pages. */
+  protected static final int RESIDENT_FIRST = CHECKPOINT_TIME - 4;
+
+  /** Offset of the number of entries in the list of resident pages. */
+  protected static final int RESIDENT_COUNT = RESIDENT_FIRST - 4;
+
+  /** Offset of the number of pages of the run kept for that list. */
+  protected static final int RESIDENT_SIZE = RESIDENT_COUNT - 4;
+
   // --------------------------------------------------------------------------
 
   /**
@@ -40,4 +55,67 @@ class DBFirstPage extends DBHeaderPage {
     return getIntValue(NUM_DB_PAGE);
   }
 
+  /**
+   * Records a completed checkpoint: every page changed and unpinned before
+   * begin_time has been written to disk.
+   */
+  public void setCheckpoint(int id, long begin_time) {
+    setIntValue(id, CHECKPOINT_ID);
+    setIntValue((int) (begin_time >>> 32), CHECKPOINT_TIME);
+    setIntValue((int) begin_time, CHECKPOINT_TIME + 4);
+  }
+
+  /**
+   * Gets the number of the last checkpoint, 0 if there was none.
+   */
+  public int getCheckpointId() {
+    return getIntValue(CHECKPOINT_ID);
+  }
+
+  /**
+   * Gets the time the last checkpoint began, 0 if there was none.
+   */
+  public long getCheckpointTime() {
+    return ((long) getIntValue(CHECKPOINT_TIME) << 32)
+        | (getIntValue(CHECKPOINT_TIME + 4) & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Records the run of pages kept for the list of resident pages.
+   */
+  public void setResidentRun(int first_pid, int run_size) {
+    setIntValue(first_pid, RESIDENT_FIRST);
+    setIntValue(run_size, RESIDENT_SIZE);
+  }
+
+  /**
+   * Sets the number of entries in the list of resident pages.
+   */
+  public void setResidentCount(int count) {
+    setIntValue(count, RESIDENT_COUNT);
+  }
+
+  /**
+   * Gets the first page of the list of resident pages.
+   */
+  public int getResidentFirst() {
+    return getIntValue(RESIDENT_FIRST);
+  }
+
+  /**
+   * Gets the number of entries in the list of resident pages, 0 if there
+   * is none.
+   */
+  public int getResidentCount() {
+    return getIntValue(RESIDENT_COUNT);
+  }
+
+  /**
+   * Gets the number of pages of the run kept for the list of resident
+   * pages, 0 if there is none.
+   */
+  public int getResidentRunSize() {
+    return getIntValue(RESIDENT_SIZE);
+  }
+
 } // class DBFirstPage extends DBHeaderPage
@@ -26,8 +26,9 @@ class DBHeaderPage extends Page {
   /** Amount of additional bytes used by directory pages. */
   protected static final int DIR_PAGE_USED_BYTES = 8 + 8;
 
-  /** Amount of additional bytes used by the first page. */
-  protected static final int FIRST_PAGE_USED_BYTES = DIR_PAGE_USED_BYTES + 4;
+  /** Amount of additional bytes used by the first page: the number of
+   * pages, the checkpoint marker and the list of resident pages. */
+  protected static final int FIRST_PAGE_USED_BYTES = DIR_PAGE_USED_BYTES + 4 + 12 + 12;
 
   // --------------------------------------------------------------------------
 
@@ -43,7 +44,7 @@ class DBHeaderPage extends Page {
    * Constructor that wraps an existing header page.
    */
   public DBHeaderPage(Page page) {
-    super(page.getData());
+    super(page);
   }
 
   /**
@@ -1,5 +1,6 @@
 package diskmgr;
 
+import bufmgr.BufMgr;
 import global.GlobalConst;
 import global.Minibase;
 import global.Page;
@@ -22,12 +23,29 @@ import java.io.RandomAccessFile;
  * </ol>
  * The disk manager manages a library of entries consisting of the name of
  * a file and the page number of the first page in the file.
+ * <p>
+ * Page reads and writes may be issued by several threads at once; the
+ * updates of the space map and of the file directory are serialized.
+ * Interrupting a thread does not affect the reads and writes it issues.
+ * <p>
+ * The header and space map pages are cached in the metadata pool of the
+ * pool manager, apart from the pages of the files.
+ * <p>
+ * The pages resident in the default buffer pool are listed in the database
+ * when it is closed, and loaded again in the background when it is opened,
+ * so that the pool does not start out cold.
   */
 public class DiskMgr implements GlobalConst {
 
   /** Number of actual bits per page. */
   protected static final int BITS_PER_PAGE = PAGE_SIZE * 8;
 
+  /** Number of entries per page of the list of resident pages. */
+  protected static final int RESIDENT_PER_PAGE = PAGE_SIZE / 8;
+
+  /** Most pages of a run staged through io_buffer at a time. */
+  protected static final int IO_CHUNK_PAGES = 64;
+
   // --------------------------------------------------------------------------
 
   /** Pages in the database are stored as an Operating System file.  
@@ -46,8 +64,25 @@ public class DiskMgr implements GlobalConst {
   /** Number of disk page writes since database construction. */
   protected int write_cnt;
 
+  /** Serializes seeks and transfers on the OS file. */
+  private final Object io_latch = new Object();
+
+  /** Staging area for off-heap pages and runs of pages, under io_latch.
+   * The OS file is only accessed through fp, whose transfers, unlike
+   * those of its channel, are not cut short by interrupting the caller.
+   * Longer runs are staged a chunk at a time, so the buffer stays small
+   * and io_latch is let go between chunks. */
+  private final byte[] io_buffer = new byte[IO_CHUNK_PAGES * PAGE_SIZE];
+
   // ------Manage the DB--------------------
 
+  /**
+   * Gets the buffer pool of the header and space map pages.
+   */
+  private static BufMgr metadata() {
+    return Minibase.PoolManager.getMetadataPool();
+  }
+
 
   /**
    * Creates and opens a new database with the given OS file name and specified
@@ -75,9 +110,9 @@ public class DiskMgr implements GlobalConst {
     // create and initialize the first DB page
     PageId pageId = new PageId(FIRST_PAGEID);
     DBFirstPage firstpg = new DBFirstPage();
-    Minibase.BufferManager.pinPage(pageId, firstpg, PIN_MEMCPY);
+    metadata().pinPage(pageId, firstpg, PIN_MEMCPY);
     firstpg.setNumDBPages(num_db_pages);
-    Minibase.BufferManager.unpinPage(pageId, UNPIN_DIRTY);
+    metadata().unpinPage(pageId, UNPIN_DIRTY);
 
     // calculate how many pages are needed for the space map; reserve
     // page 0 plus room for the space map
@@ -98,6 +133,9 @@ public class DiskMgr implements GlobalConst {
     	throw new IllegalStateException("File "+name+" does not exist\n");
     try {
       fp = new RandomAccessFile(fname, "rw");
+      // size the database by its file until the first page says otherwise,
+      // so that the first page can be read
+      num_db_pages = (int) (fp.length() / PAGE_SIZE);
     } catch (IOException exc) {
       Minibase.haltSystem(exc);
     }
@@ -105,12 +143,15 @@ public class DiskMgr implements GlobalConst {
     // read the first page
     PageId pageId = new PageId(FIRST_PAGEID);
     Page apage = new Page();
-    Minibase.BufferManager.pinPage(pageId, apage, PIN_DISKIO);
+    metadata().pinPage(pageId, apage, PIN_DISKIO, LATCH_SHARED);
 
     // get the total number of pages
     DBFirstPage firstpg = new DBFirstPage(apage);
     num_db_pages = firstpg.getNumDBPages();
-    Minibase.BufferManager.unpinPage(pageId, UNPIN_CLEAN);
+    metadata().unpinPage(pageId, UNPIN_CLEAN, LATCH_SHARED);
+
+    // warm up the buffer pool
+    Minibase.PoolManager.startWarmUp();
 
   } // public void openDB(String fname)
 
@@ -120,7 +161,7 @@ public class DiskMgr implements GlobalConst {
    */
   public void closeDB() {
     try {
-      Minibase.BufferManager.flushAllFrames();
+      Minibase.PoolManager.closeAllPools();
       fp.close();
     } catch (IOException exc) {
       Minibase.haltSystem(exc);
@@ -152,17 +193,74 @@ public class DiskMgr implements GlobalConst {
       throw new IllegalArgumentException("Invalid page number; read aborted");
     }
 
-    // seek to the correct page on disk and read it
-    try {
-      fp.seek((long) (pageno.pid * PAGE_SIZE));
-      fp.read(mempage.getData());
-      read_cnt++;
-    } catch (IOException exc) {
-      Minibase.haltSystem(exc);
+    // seek to the correct page on disk and read it; off-heap pages are
+    // staged through io_buffer
+    synchronized (io_latch) {
+      try {
+        fp.seek((long) pageno.pid * PAGE_SIZE);
+        if (mempage.isOffHeap()) {
+          int count = fp.read(io_buffer, 0, PAGE_SIZE);
+          if (count > 0) {
+            mempage.getBuffer().put(io_buffer, 0, count);
+          }
+        } else {
+          fp.read(mempage.getData());
+        }
+        read_cnt++;
+      } catch (IOException exc) {
+        Minibase.haltSystem(exc);
+      }
     }
 
   } // public void read_page(PageId pageno, Page mempage)
 
+  /**
+   * Reads a run of consecutive pages from disk, with one request per
+   * chunk of up to IO_CHUNK_PAGES pages.
+   * 
+   * @param firstid identifies the first page of the run
+   * @param mempages output parameters to hold the contents of the pages,
+   * one for each page of the run
+   * @throws IllegalArgumentException if the run is not within the database
+   */
+  public void read_pages(PageId firstid, Page[] mempages) {
+
+    // validate the run
+    if ((firstid.pid < 0) || (mempages.length < 1)
+        || (firstid.pid + mempages.length > num_db_pages)) {
+      throw new IllegalArgumentException("Invalid page run; read aborted");
+    }
+
+    // read the run a chunk at a time: seek to its first page, read it with
+    // one request and scatter it into the pages
+    for (int first = 0; first < mempages.length; first += IO_CHUNK_PAGES) {
+      int num_pages = Math.min(IO_CHUNK_PAGES, mempages.length - first);
+      synchronized (io_latch) {
+        try {
+          fp.seek((long) (firstid.pid + first) * PAGE_SIZE);
+          int length = num_pages * PAGE_SIZE;
+          int done = 0;
+          while (done < length) {
+            int count = fp.read(io_buffer, done, length - done);
+            if (count < 0) {
+              break;
+            }
+            done += count;
+          }
+          // pages past the end of the file are left as they were
+          for (int i = 0; i * PAGE_SIZE < done; i++) {
+            mempages[first + i].getBuffer().put(io_buffer, i * PAGE_SIZE,
+                Math.min(PAGE_SIZE, done - i * PAGE_SIZE));
+          }
+          read_cnt += num_pages;
+        } catch (IOException exc) {
+          Minibase.haltSystem(exc);
+        }
+      }
+    }
+
+  } // public void read_pages(PageId firstid, Page[] mempages)
+
   /**
    * Writes the contents of the given page to disk.
    * 
@@ -178,15 +276,59 @@ public class DiskMgr implements GlobalConst {
     }
 
     // seek to the correct page on disk and write it
-    try {
-      fp.seek((long) (pageno.pid * PAGE_SIZE));
-      fp.write(mempage.getData());
-      write_cnt++;
-    } catch (IOException exc) {
-      Minibase.haltSystem(exc);
+    synchronized (io_latch) {
+      try {
+        fp.seek((long) pageno.pid * PAGE_SIZE);
+        if (mempage.isOffHeap()) {
+          mempage.getBuffer().get(io_buffer, 0, PAGE_SIZE);
+          fp.write(io_buffer, 0, PAGE_SIZE);
+        } else {
+          fp.write(mempage.getData());
+        }
+        write_cnt++;
+      } catch (IOException exc) {
+        Minibase.haltSystem(exc);
+      }
     }
 
   } // public void write_page(PageId pageno, Page mempage)
+
+  /**
+   * Writes a run of consecutive pages to disk, with one request per chunk
+   * of up to IO_CHUNK_PAGES pages.
+   * 
+   * @param firstid identifies the first page of the run
+   * @param mempages hold the contents of the pages, one for each page of
+   * the run
+   * @throws IllegalArgumentException if the run is not within the database
+   */
+  public void write_pages(PageId firstid, Page[] mempages) {
+
+    // validate the run
+    if ((firstid.pid < 0) || (mempages.length < 1)
+        || (firstid.pid + mempages.length > num_db_pages)) {
+      throw new IllegalArgumentException("Invalid page run; write aborted");
+    }
+
+    // write the run a chunk at a time: gather it from the pages, seek to
+    // its first page and write it with one request
+    for (int first = 0; first < mempages.length; first += IO_CHUNK_PAGES) {
+      int num_pages = Math.min(IO_CHUNK_PAGES, mempages.length - first);
+      synchronized (io_latch) {
+        try {
+          for (int i = 0; i < num_pages; i++) {
+            mempages[first + i].getBuffer().get(io_buffer, i * PAGE_SIZE, PAGE_SIZE);
+          }
+          fp.seek((long) (firstid.pid + first) * PAGE_SIZE);
+          fp.write(io_buffer, 0, num_pages * PAGE_SIZE);
+          write_cnt += num_pages;
+        } catch (IOException exc) {
+          Minibase.haltSystem(exc);
+        }
+      }
+    }
+
+  } // public void write_pages(PageId firstid, Page[] mempages)
   
   /**
    * Gets the number of disk reads since database construction.
@@ -201,6 +343,145 @@ public class DiskMgr implements GlobalConst {
     return write_cnt;
   }
 
+  /**
+   * Gets the size of the database, in pages.
+   */
+  public int getNumDBPages() {
+    return num_db_pages;
+  }
+
+  /**
+   * Records a completed checkpoint in the first page and writes that page
+   * to disk.
+   * 
+   * @param begin_time when the checkpoint began; every page changed and
+   * unpinned before then has been written
+   * @return the number of the checkpoint
+   */
+  public synchronized int write_checkpoint(long begin_time) {
+    PageId pageId = new PageId(FIRST_PAGEID);
+    Page apage = new Page();
+    metadata().pinPage(pageId, apage, PIN_DISKIO, LATCH_EXCLUSIVE);
+    DBFirstPage firstpg = new DBFirstPage(apage);
+    int id = firstpg.getCheckpointId() + 1;
+    firstpg.setCheckpoint(id, begin_time);
+    metadata().unpinPage(pageId, UNPIN_DIRTY, LATCH_EXCLUSIVE);
+    metadata().flushPage(pageId);
+    return id;
+  }
+
+  /**
+   * Gets the number of the last checkpoint, 0 if there was none.
+   */
+  public int getCheckpointId() {
+    PageId pageId = new PageId(FIRST_PAGEID);
+    return metadata().readOptimistic(pageId, new Page(),
+        page -> new DBFirstPage(page).getCheckpointId());
+  }
+
+  /**
+   * Gets the time the last checkpoint began, 0 if there was none.  Pages
+   * changed before then are on disk only if they were also unpinned.
+   */
+  public long getCheckpointTime() {
+    PageId pageId = new PageId(FIRST_PAGEID);
+    return metadata().readOptimistic(pageId, new Page(),
+        page -> new DBFirstPage(page).getCheckpointTime());
+  }
+
+  /**
+   * Saves the list of pages to load when the database is next opened,
+   * replacing the list saved before.  The list is kept in a run of pages
+   * recorded in the first page, which is written over each time and only
+   * replaced by a larger one when the list outgrows it, so that saving the
+   * list does not churn the space map.  The run is written directly, not
+   * through a buffer pool.  If there is no room for a larger run, no list
+   * is kept.
+   * 
+   * @param entries (hotness << 32 | page number) of each page
+   */
+  public synchronized void write_resident_pages(long[] entries) {
+
+    PageId pageId = new PageId(FIRST_PAGEID);
+    Page apage = new Page();
+    metadata().pinPage(pageId, apage, PIN_DISKIO, LATCH_EXCLUSIVE);
+    DBFirstPage firstpg = new DBFirstPage(apage);
+    int first = firstpg.getResidentFirst();
+    int run_size = firstpg.getResidentRunSize();
+
+    // replace the run if the list outgrew it
+    int num_pages = (entries.length + RESIDENT_PER_PAGE - 1) / RESIDENT_PER_PAGE;
+    if (num_pages > run_size) {
+      if (run_size > 0) {
+        deallocate_page(new PageId(first), run_size);
+      }
+      try {
+        first = allocate_page(num_pages).pid;
+        run_size = num_pages;
+      } catch (IllegalStateException exc) {
+        // the database is full; start cold next time
+        first = INVALID_PAGEID;
+        run_size = 0;
+      }
+      firstpg.setResidentRun(first, run_size);
+    }
+
+    // store the list, two ints per entry
+    int count = 0;
+    if (num_pages > 0 && num_pages <= run_size) {
+      Page[] run = new Page[num_pages];
+      for (int i = 0; i < num_pages; i++) {
+        run[i] = new Page();
+      }
+      for (int i = 0; i < entries.length; i++) {
+        Page page = run[i / RESIDENT_PER_PAGE];
+        int offset = (i % RESIDENT_PER_PAGE) * 8;
+        page.setIntValue((int) entries[i], offset);
+        page.setIntValue((int) (entries[i] >>> 32), offset + 4);
+      }
+      write_pages(new PageId(first), run);
+      count = entries.length;
+    }
+    firstpg.setResidentCount(count);
+    metadata().unpinPage(pageId, UNPIN_DIRTY, LATCH_EXCLUSIVE);
+
+  } // public void write_resident_pages(long[] entries)
+
+  /**
+   * Reads the list of pages saved by write_resident_pages.
+   * 
+   * @return (hotness << 32 | page number) of each page, in the order saved
+   */
+  public synchronized long[] read_resident_pages() {
+
+    PageId pageId = new PageId(FIRST_PAGEID);
+    Page apage = new Page();
+    metadata().pinPage(pageId, apage, PIN_DISKIO, LATCH_SHARED);
+    DBFirstPage firstpg = new DBFirstPage(apage);
+    int first = firstpg.getResidentFirst();
+    int count = firstpg.getResidentCount();
+    metadata().unpinPage(pageId, UNPIN_CLEAN, LATCH_SHARED);
+
+    int run_size = (count + RESIDENT_PER_PAGE - 1) / RESIDENT_PER_PAGE;
+    if (count <= 0 || first <= 0 || first + run_size > num_db_pages) {
+      return new long[0];
+    }
+    Page[] run = new Page[run_size];
+    for (int i = 0; i < run_size; i++) {
+      run[i] = new Page();
+    }
+    read_pages(new PageId(first), run);
+    long[] entries = new long[count];
+    for (int i = 0; i < count; i++) {
+      Page page = run[i / RESIDENT_PER_PAGE];
+      int offset = (i % RESIDENT_PER_PAGE) * 8;
+      entries[i] = ((long) page.getIntValue(offset + 4) << 32)
+          | (page.getIntValue(offset) & 0xFFFFFFFFL);
+    }
+    return entries;
+
+  } // public long[] read_resident_pages()
+
 //-----Manage allocation and deallocation of pages -------------------
  
   /**
@@ -212,7 +493,7 @@ public class DiskMgr implements GlobalConst {
    * @throws IllegalStateException if there is no room for a run
    * of that length
    */
-  public PageId allocate_page(int run_size) {
+  public synchronized PageId allocate_page(int run_size) {
 
     // validate the run size
     if ((run_size < 1) || (run_size > num_db_pages)) {
@@ -231,7 +512,7 @@ public class DiskMgr implements GlobalConst {
 
       // pin the current space-map page
       pgid.pid = i + 1;
-      Minibase.BufferManager.pinPage(pgid, apage, PIN_DISKIO);
+      metadata().pinPage(pgid, apage, PIN_DISKIO, LATCH_SHARED);
 
       // get the number of bits on current page
       int num_bits_this_page = num_db_pages - i * BITS_PER_PAGE;
@@ -241,7 +522,6 @@ public class DiskMgr implements GlobalConst {
       // Walk the page looking for a sequence of 0 bits of the appropriate
       // length. The outer loop steps through the page's bytes, the inner
       // one steps through each byte's bits.
-      byte[] pagebuf = apage.getData();
       for (int byteptr = 0; num_bits_this_page > 0
           && current_run_length < run_size; byteptr++) {
 
@@ -255,7 +535,7 @@ public class DiskMgr implements GlobalConst {
             && (current_run_length < run_size)) {
 
           // if a 1 is found
-          if ((pagebuf[byteptr] & tmpmask) != 0) {
+          if ((apage.getByteValue(byteptr) & tmpmask) != 0) {
             current_run_start += current_run_length + 1;
             current_run_length = 0;
           } else {
@@ -272,7 +552,7 @@ public class DiskMgr implements GlobalConst {
       } // inner loop
 
       // unpin the current space-map page
-      Minibase.BufferManager.unpinPage(pgid, UNPIN_CLEAN);
+      metadata().unpinPage(pgid, UNPIN_CLEAN, LATCH_SHARED);
 
     } // outer loop
 
@@ -308,7 +588,7 @@ public class DiskMgr implements GlobalConst {
    * @param run_size number of pages to deallocate
    * @throws IllegalArgumentException if firstid or run_size is invalid
    */
-  public void deallocate_page(PageId firstid, int run_size) {
+  public synchronized void deallocate_page(PageId firstid, int run_size) {
 
     // validate the page id
     if ((firstid.pid < 0) || (firstid.pid >= num_db_pages)) {
@@ -342,7 +622,6 @@ public class DiskMgr implements GlobalConst {
 
     // initialize reused variables
     int count = 0;
-    int bit_number = 0;
     PageId pgid = new PageId();
     Page apage = new Page();
 
@@ -350,29 +629,24 @@ public class DiskMgr implements GlobalConst {
     int num_map_pages = (num_db_pages + BITS_PER_PAGE - 1) / BITS_PER_PAGE;
     for (int i = 0; i < num_map_pages; i++) {
 
-      // pin the space-map page
-      pgid.pid = 1 + i;
-      Minibase.BufferManager.pinPage(pgid, apage, PIN_DISKIO);
-
       // how many bits should we examine on this page?
-      int num_bits_this_page = num_db_pages - i * BITS_PER_PAGE;
-      if (num_bits_this_page > BITS_PER_PAGE) {
-        num_bits_this_page = BITS_PER_PAGE;
+      int num_bits = num_db_pages - i * BITS_PER_PAGE;
+      if (num_bits > BITS_PER_PAGE) {
+        num_bits = BITS_PER_PAGE;
       }
+      final int num_bits_this_page = num_bits;
 
-      // walk the page looking for 1 bits
-      byte[] pagebuf = apage.getData();
-      for (int pgptr = 0; num_bits_this_page > 0; pgptr++) { // start forloop02
-        for (int mask = 1; mask < 256 && num_bits_this_page > 0; mask = (mask << 1), --num_bits_this_page, ++bit_number) {
-          int bit = pagebuf[pgptr] & mask;
-          if (bit != 0) {
-            count++;
+      // count the 1 bits of the space-map page without pinning it
+      pgid.pid = 1 + i;
+      count += metadata().readOptimistic(pgid, apage, page -> {
+        int page_count = 0;
+        for (int bit = 0; bit < num_bits_this_page; bit++) {
+          if ((page.getByteValue(bit / 8) & (1 << (bit % 8))) != 0) {
+            page_count++;
           }
         }
-      }
-
-      // unpin the space-map page
-      Minibase.BufferManager.unpinPage(pgid, UNPIN_CLEAN);
+        return page_count;
+      });
 
     } // end of forloop01
 
@@ -399,7 +673,7 @@ public class DiskMgr implements GlobalConst {
       // pin the space-map page
       pgid.pid = 1 + i; // space map starts at page1
       Page apage = new Page();
-      Minibase.BufferManager.pinPage(pgid, apage, PIN_DISKIO);
+      metadata().pinPage(pgid, apage, PIN_DISKIO, LATCH_SHARED);
 
       // how many bits should we examine on this page?
       int num_bits_this_page = num_db_pages - i * BITS_PER_PAGE;
@@ -415,14 +689,13 @@ public class DiskMgr implements GlobalConst {
       // length. The outer loop steps through the page's bytes, the inner
       // one steps through each byte's bits.
       int pgptr = 0;
-      byte[] pagebuf = apage.getData();
       int mask;
       for (; num_bits_this_page > 0; pgptr++) { // start forloop02
 
         for (mask = 1; mask < 256 && num_bits_this_page > 0; mask = (mask << 1), --num_bits_this_page, ++bit_number) {
           // start forloop03
 
-          int bit = pagebuf[pgptr] & mask;
+          int bit = apage.getByteValue(pgptr) & mask;
           if ((bit_number % 10) == 0) {
             if ((bit_number % 50) == 0) {
               if (bit_number > 0) {
@@ -444,7 +717,7 @@ public class DiskMgr implements GlobalConst {
 
       } // end of forloop02
 
-      Minibase.BufferManager.unpinPage(pgid, UNPIN_CLEAN);
+      metadata().unpinPage(pgid, UNPIN_CLEAN, LATCH_SHARED);
 
     } // end of forloop01
 
@@ -469,8 +742,7 @@ public class DiskMgr implements GlobalConst {
 
       // pin the space-map page
       Page pg = new Page();
-      Minibase.BufferManager.pinPage(pgid, pg, PIN_DISKIO);
-      byte[] pgbuf = pg.getData();
+      metadata().pinPage(pgid, pg, PIN_DISKIO, LATCH_EXCLUSIVE);
 
       // locate the piece of the run that fits on this page
       int first_byte_no = first_bit_no / 8;
@@ -500,20 +772,20 @@ public class DiskMgr implements GlobalConst {
         byte bytemask = mask.byteValue();
 
         if (value == 1) {
-          temp = (pgbuf[cur_posi] | bytemask);
+          temp = (pg.getByteValue(cur_posi) | bytemask);
           intmask = new Integer(temp);
-          pgbuf[cur_posi] = intmask.byteValue();
+          pg.setByteValue(intmask.byteValue(), cur_posi);
         } else {
-          temp = pgbuf[cur_posi] & (255 ^ bytemask);
+          temp = pg.getByteValue(cur_posi) & (255 ^ bytemask);
           intmask = new Integer(temp);
-          pgbuf[cur_posi] = intmask.byteValue();
+          pg.setByteValue(intmask.byteValue(), cur_posi);
         }
         run_size -= num_bits_this_byte;
 
       } // end of forloop02
 
       // unpin the space-map page
-      Minibase.BufferManager.unpinPage(pgid, UNPIN_DIRTY);
+      metadata().unpinPage(pgid, UNPIN_DIRTY, LATCH_EXCLUSIVE);
 
     } // end of forloop01
 
@@ -529,7 +801,7 @@ public class DiskMgr implements GlobalConst {
    * 
    * @throws IllegalArgumentException if fname or start_pageno is invalid
    */
-  public void add_file_entry(String fname, PageId start_pageno) {
+  public synchronized void add_file_entry(String fname, PageId start_pageno) {
 
     // validate the arguments
     if (fname.length() > NAME_MAXLEN) {
@@ -557,7 +829,7 @@ public class DiskMgr implements GlobalConst {
 
       // pin the next header page and get its next
       hpid.pid = nexthpid.pid;
-      Minibase.BufferManager.pinPage(hpid, hpage, PIN_DISKIO);
+      metadata().pinPage(hpid, hpage, PIN_DISKIO, LATCH_EXCLUSIVE);
       nexthpid = hpage.getNextPage();
 
       // search the header page for an empty entry
@@ -576,7 +848,7 @@ public class DiskMgr implements GlobalConst {
         found = true;
       } else if (nexthpid.pid != INVALID_PAGEID) {
         // unpin before continuing loop
-        Minibase.BufferManager.unpinPage(hpid, UNPIN_CLEAN);
+        metadata().unpinPage(hpid, UNPIN_CLEAN, LATCH_EXCLUSIVE);
       }
 
     } while ((nexthpid.pid != INVALID_PAGEID) && (!found));
@@ -589,11 +861,11 @@ public class DiskMgr implements GlobalConst {
 
       // set the next-page pointer on the previous library page
       hpage.setNextPage(nexthpid);
-      Minibase.BufferManager.unpinPage(hpid, UNPIN_DIRTY);
+      metadata().unpinPage(hpid, UNPIN_DIRTY, LATCH_EXCLUSIVE);
 
       // pin the newly-allocated directory page
       hpid.pid = nexthpid.pid;
-      Minibase.BufferManager.pinPage(hpid, hpage, PIN_MEMCPY);
+      metadata().pinPage(hpid, hpage, PIN_MEMCPY, LATCH_EXCLUSIVE);
       hpage.initDefaults();
       free_slot = 0;
 
@@ -603,7 +875,7 @@ public class DiskMgr implements GlobalConst {
     // slot; "hpage" has the directory_page pointer; "free_slot" is the entry
     // number in the directory where we're going to put the new file entry.
     hpage.setFileEntry(fname, start_pageno, free_slot);
-    Minibase.BufferManager.unpinPage(hpid, UNPIN_DIRTY);
+    metadata().unpinPage(hpid, UNPIN_DIRTY, LATCH_EXCLUSIVE);
 
   } // public void add_file_entry(String fname, PageId start_pageno)
 
@@ -612,7 +884,7 @@ public class DiskMgr implements GlobalConst {
    * 
    * @throws IllegalArgumentException if fname is invalid
    */
-  public void delete_file_entry(String fname) {
+  public synchronized void delete_file_entry(String fname) {
 
     // Is the file really in the library?
     if (get_file_entry(fname) == null) {
@@ -631,7 +903,7 @@ public class DiskMgr implements GlobalConst {
 
       // pin the next library page and get its next
       hpid.pid = nexthpid.pid;
-      Minibase.BufferManager.pinPage(hpid, hpage, PIN_DISKIO);
+      metadata().pinPage(hpid, hpage, PIN_DISKIO, LATCH_EXCLUSIVE);
       nexthpid = hpage.getNextPage();
 
       // search the library page for the entry
@@ -652,7 +924,7 @@ public class DiskMgr implements GlobalConst {
         found = true;
       } else {
         // unpin before continuing loop
-        Minibase.BufferManager.unpinPage(hpid, UNPIN_CLEAN);
+        metadata().unpinPage(hpid, UNPIN_CLEAN, LATCH_EXCLUSIVE);
       }
 
     } while ((nexthpid.pid != INVALID_PAGEID) && (!found));
@@ -660,7 +932,8 @@ public class DiskMgr implements GlobalConst {
     // have to delete record at hpnum:slot
     tmppid.pid = INVALID_PAGEID;
     hpage.setFileEntry("\0", tmppid, slot);
-    Minibase.BufferManager.unpinPage(hpid, UNPIN_DIRTY);
+    metadata().unpinPage(hpid, UNPIN_DIRTY, LATCH_EXCLUSIVE);
+    Minibase.PoolManager.unassignFile(fname);
 
   } // public void delete_file_entry(String fname)
 
@@ -672,52 +945,37 @@ public class DiskMgr implements GlobalConst {
    */
   public PageId get_file_entry(String fname) {
 
-    // search the library pages for the entry's slot
-    boolean found = false;
-    int slot = 0;
-    DBHeaderPage hpage = new DBHeaderPage();
-    PageId hpid = new PageId();
-    PageId tmppid = new PageId();
-    PageId nexthpid = new PageId(0);
+    // search the library pages for the entry
+    Page apage = new Page();
+    PageId hpid = new PageId(0);
     do {
 
-      // pin the next library page and get its next
-      hpid.pid = nexthpid.pid;
-      Minibase.BufferManager.pinPage(hpid, hpage, PIN_DISKIO);
-      nexthpid = hpage.getNextPage();
-
-      // search the library page for the entry
-      int entry = 0;
-      String tmpname;
-      while (entry < hpage.getNumOfEntries()) {
-        tmpname = hpage.getFileEntry(tmppid, entry);
-        if ((tmppid.pid != INVALID_PAGEID)
-            && (tmpname.compareToIgnoreCase(fname) == 0)) {
-          break;
+      // read the next library page without pinning it; the reader may run
+      // more than once, so it only returns the file's first page, or
+      // INVALID_PAGEID, and the next library page
+      int[] found = metadata().readOptimistic(hpid, apage, page -> {
+        DBHeaderPage hpage = new DBHeaderPage(page);
+        PageId tmppid = new PageId();
+        for (int entry = 0; entry < hpage.getNumOfEntries(); entry++) {
+          String tmpname = hpage.getFileEntry(tmppid, entry);
+          if ((tmppid.pid != INVALID_PAGEID)
+              && (tmpname.compareToIgnoreCase(fname) == 0)) {
+            return new int[] { tmppid.pid, INVALID_PAGEID };
+          }
         }
-        entry++;
-      }
+        return new int[] { INVALID_PAGEID, hpage.getNextPage().pid };
+      });
 
-      // verify the entry slot was found
-      if (entry < hpage.getNumOfEntries()) {
-        slot = entry;
-        found = true;
+      // return the first page id if the entry was found
+      if (found[0] != INVALID_PAGEID) {
+        return new PageId(found[0]);
       }
+      hpid.pid = found[1];
 
-      // unpin the page before continuing or exiting loop
-      Minibase.BufferManager.unpinPage(hpid, UNPIN_CLEAN);
-
-    } while ((nexthpid.pid != INVALID_PAGEID) && (!found));
-
-    // return null if not found
-    if (!found) {
-      return null;
-    }
+    } while (hpid.pid != INVALID_PAGEID);
 
-    // otherwise, return the first page id
-    PageId startpid = new PageId();
-    hpage.getFileEntry(startpid, slot);
-    return startpid;
+    // the file is not in the library
+    return null;
 
   } // public PageId get_file_entry(String fname)
 
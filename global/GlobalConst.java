@@ -35,12 +35,19 @@ public interface GlobalConst {
   /** Don't copy anything into the frame. */
   public static final int PIN_NOOP = 12;
   
-  /** Forces the page to be written to disk when unpinned. */
+  /** Marks the page as modified, so it is written to disk before its frame
+   * is reused or when the buffer pool is flushed. */
   public static final boolean UNPIN_DIRTY = true;
 
   /** Optimization to avoid writing to disk when unpinned. */
   public static final boolean UNPIN_CLEAN = false;
 
+  /** Latch the page for reading; other readers may hold it at once. */
+  public static final boolean LATCH_SHARED = false;
+
+  /** Latch the page for writing; no other thread may hold it. */
+  public static final boolean LATCH_EXCLUSIVE = true;
+
   //
   // Heap File Constants
   //
@@ -1,6 +1,7 @@
 package global;
 
 import bufmgr.BufMgr;
+import bufmgr.PoolMgr;
 import diskmgr.DiskMgr;
 
 /**
@@ -15,9 +16,12 @@ public class Minibase {
   /** The Minibase Disk Space Manager. */
   public static DiskMgr DiskManager;
   
-  /** The Minibase Buffer Manager. */
+  /** The Minibase Buffer Manager, i.e. the default buffer pool. */
   public static BufMgr BufferManager;
 
+  /** The buffer pools, including the default one, and their files. */
+  public static PoolMgr PoolManager;
+
   // --------------------------------------------------------------------------
 
   /**
@@ -37,7 +41,43 @@ public class Minibase {
   } // constructor
 
   /**
-   * Initializes the current instance of Minibase with the given configuration.
+   * Constructs and starts an instance of Minibase, given the configuration.
+   * 
+   * @param dbname Name of the data file
+   * @param num_pgs Number of pages to allocate
+   * @param bufpoolsize Buffer pool size (in pages)
+   * @param replacement_policy Buffer pool replacement policy, e.g. "Clock"
+   * @param exists If the database already exists on disk
+   */
+  public Minibase(String dbname, int num_pgs, int bufpoolsize,
+      String replacement_policy, boolean exists) {
+
+    // simply initialize the database
+    init(dbname, num_pgs, bufpoolsize, replacement_policy, exists);
+
+  } // constructor
+
+  /**
+   * Constructs and starts an instance of Minibase, given the configuration.
+   * 
+   * @param dbname Name of the data file
+   * @param num_pgs Number of pages to allocate
+   * @param bufpoolsize Buffer pool size (in pages)
+   * @param replacement_policy Buffer pool replacement policy, e.g. "Clock"
+   * @param off_heap If the buffer pool is held outside the Java heap
+   * @param exists If the database already exists on disk
+   */
+  public Minibase(String dbname, int num_pgs, int bufpoolsize,
+      String replacement_policy, boolean off_heap, boolean exists) {
+
+    // simply initialize the database
+    init(dbname, num_pgs, bufpoolsize, replacement_policy, off_heap, exists);
+
+  } // constructor
+
+  /**
+   * Initializes the current instance of Minibase with the given configuration,
+   * using the default replacement policy.
    * 
    * @param dbname Name of the data file
    * @param num_pgs Number of pages to allocate
@@ -46,6 +86,37 @@ public class Minibase {
    */
   public void init(String dbname, int num_pgs, int bufpoolsize,
       boolean exists) {
+    init(dbname, num_pgs, bufpoolsize, BufMgr.DEFAULT_POLICY, exists);
+  }
+
+  /**
+   * Initializes the current instance of Minibase with the given configuration.
+   * 
+   * @param dbname Name of the data file
+   * @param num_pgs Number of pages to allocate
+   * @param bufpoolsize Buffer pool size (in pages)
+   * @param replacement_policy Buffer pool replacement policy: "Clock",
+   * "LRU", "LRU-K", "2Q" or "ARC"
+   * @param exists If the database already exists on disk
+   */
+  public void init(String dbname, int num_pgs, int bufpoolsize,
+      String replacement_policy, boolean exists) {
+    init(dbname, num_pgs, bufpoolsize, replacement_policy, false, exists);
+  }
+
+  /**
+   * Initializes the current instance of Minibase with the given configuration.
+   * 
+   * @param dbname Name of the data file
+   * @param num_pgs Number of pages to allocate
+   * @param bufpoolsize Buffer pool size (in pages)
+   * @param replacement_policy Buffer pool replacement policy: "Clock",
+   * "LRU", "LRU-K", "2Q" or "ARC"
+   * @param off_heap If the buffer pool is held outside the Java heap
+   * @param exists If the database already exists on disk
+   */
+  public void init(String dbname, int num_pgs, int bufpoolsize,
+      String replacement_policy, boolean off_heap, boolean exists) {
 
     // save the file name
     DatabaseName = dbname;
@@ -53,7 +124,8 @@ public class Minibase {
     // load the static layers
     try {
       DiskManager = new DiskMgr();
-      BufferManager = new BufMgr(bufpoolsize);
+      BufferManager = new BufMgr(bufpoolsize, replacement_policy, off_heap);
+      PoolManager = new PoolMgr(BufferManager);
     } catch (Exception exc) {
       haltSystem(exc);
     }
@@ -64,7 +136,7 @@ public class Minibase {
         DiskManager.openDB(dbname);
       } else {
         DiskManager.createDB(dbname, num_pgs);
-        BufferManager.flushAllFrames();
+        PoolManager.flushAllPools();
       }
     } catch (Exception exc) {
       haltSystem(exc);
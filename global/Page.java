@@ -1,13 +1,21 @@
 package global;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 /**
- * Image of a disk page in memory.
+ * Image of a disk page in memory.  The page is held either in a byte array
+ * on the heap or in a slot of an off-heap buffer; the accessors work the
+ * same way for both, with the same byte order as Convert.
  */
 public class Page implements GlobalConst {
 
-  /** The actual byte array for the page. */
+  /** The actual byte array for the page, or null if the page is off-heap. */
   protected byte[] data;
 
+  /** The off-heap slot holding the page, or null if the page is on the heap. */
+  protected ByteBuffer buffer;
+
   // --------------------------------------------------------------------------
 
   /**
@@ -24,13 +32,53 @@ public class Page implements GlobalConst {
     setData(data);
   }
 
+  /**
+   * Constructor that wraps the given slot of an off-heap buffer.  The slot
+   * must hold exactly one page.
+   */
+  public Page(ByteBuffer buffer) {
+    if (buffer.capacity() != PAGE_SIZE) {
+      Minibase.haltSystem(new IllegalArgumentException(
+          "Invalid page buffer size"));
+    }
+    this.buffer = buffer;
+  }
+
+  /**
+   * Constructor that shares the given page's contents, e.g. to view a pinned
+   * frame as a header page.
+   */
+  public Page(Page page) {
+    setPage(page);
+  }
+
   /**
    * Get accessor for the data byte array.
+   * 
+   * @throws IllegalStateException if the page is held off-heap
    */
   public byte[] getData() {
+    if (data == null) {
+      throw new IllegalStateException("Page is off-heap; use the accessors");
+    }
     return data;
   }
 
+  /**
+   * Gets a buffer over the contents of the page, with its position at 0 and
+   * its limit at PAGE_SIZE.  Writes through the buffer change the page.
+   */
+  public ByteBuffer getBuffer() {
+    return (buffer != null) ? buffer.duplicate() : ByteBuffer.wrap(data);
+  }
+
+  /**
+   * Returns true if the page is held in an off-heap buffer.
+   */
+  public boolean isOffHeap() {
+    return buffer != null;
+  }
+
   /**
    * Set accessor for the data byte array.
    * 
@@ -42,6 +90,7 @@ public class Page implements GlobalConst {
           "Invalid page buffer size"));
     }
     this.data = data;
+    this.buffer = null;
   }
 
   /**
@@ -49,21 +98,64 @@ public class Page implements GlobalConst {
    */
   public void setPage(Page page) {
     this.data = page.data;
+    this.buffer = page.buffer;
   }
 
   /**
    * Copies the contents of the given page's buffer into this page's buffer.
    */
   public void copyPage(Page page) {
-    System.arraycopy(page.data, 0, this.data, 0, PAGE_SIZE);
+    if (buffer == null && page.buffer == null) {
+      System.arraycopy(page.data, 0, this.data, 0, PAGE_SIZE);
+    } else {
+      getBuffer().put(page.getBuffer());
+    }
+  }
+
+  /**
+   * Fills the page with zeros.
+   */
+  public void clear() {
+    if (buffer == null) {
+      Arrays.fill(data, (byte) 0);
+    } else {
+      ByteBuffer zeros = buffer.duplicate();
+      while (zeros.remaining() >= 8) {
+        zeros.putLong(0L);
+      }
+      while (zeros.hasRemaining()) {
+        zeros.put((byte) 0);
+      }
+    }
   }
 
   // --------------------------------------------------------------------------
 
+  /**
+   * Gets a byte at the given page offset.
+   */
+  public byte getByteValue(int offset) {
+    return (buffer != null) ? buffer.get(offset) : data[offset];
+  }
+
+  /**
+   * Sets a byte at the given page offset.
+   */
+  public void setByteValue(byte value, int offset) {
+    if (buffer != null) {
+      buffer.put(offset, value);
+    } else {
+      data[offset] = value;
+    }
+  }
+
   /**
    * Gets a char at the given page offset.
    */
   public char getCharValue(int offset) {
+    if (buffer != null) {
+      return (char) buffer.get(offset);
+    }
     return Convert.getCharValue(offset, data);
   }
 
@@ -71,13 +163,20 @@ public class Page implements GlobalConst {
    * Sets a char at the given page offset.
    */
   public void setCharValue(char value, int offset) {
-    Convert.setCharValue(value, offset, data);
+    if (buffer != null) {
+      buffer.put(offset, (byte) value);
+    } else {
+      Convert.setCharValue(value, offset, data);
+    }
   }
 
   /**
    * Gets a short at the given page offset.
    */
   public short getShortValue(int offset) {
+    if (buffer != null) {
+      return buffer.getShort(offset);
+    }
     return Convert.getShortValue(offset, data);
   }
 
@@ -85,13 +184,20 @@ public class Page implements GlobalConst {
    * Sets a short at the given page offset.
    */
   public void setShortValue(short value, int offset) {
-    Convert.setShortValue(value, offset, data);
+    if (buffer != null) {
+      buffer.putShort(offset, value);
+    } else {
+      Convert.setShortValue(value, offset, data);
+    }
   }
 
   /**
    * Gets an int at the given page offset.
    */
   public int getIntValue(int offset) {
+    if (buffer != null) {
+      return buffer.getInt(offset);
+    }
     return Convert.getIntValue(offset, data);
   }
 
@@ -99,13 +205,20 @@ public class Page implements GlobalConst {
    * Sets an int at the given page offset.
    */
   public void setIntValue(int value, int offset) {
-    Convert.setIntValue(value, offset, data);
+    if (buffer != null) {
+      buffer.putInt(offset, value);
+    } else {
+      Convert.setIntValue(value, offset, data);
+    }
   }
 
   /**
    * Gets a float at the given page offset.
    */
   public float getFloatValue(int offset) {
+    if (buffer != null) {
+      return buffer.getFloat(offset);
+    }
     return Convert.getFloatValue(offset, data);
   }
 
@@ -113,13 +226,22 @@ public class Page implements GlobalConst {
    * Sets a float at the given page offset.
    */
   public void setFloatValue(float value, int offset) {
-    Convert.setFloatValue(value, offset, data);
+    if (buffer != null) {
+      buffer.putFloat(offset, value);
+    } else {
+      Convert.setFloatValue(value, offset, data);
+    }
   }
 
   /**
    * Gets a string at the given page offset, given the maximum length.
    */
   public String getStringValue(int offset, int length) {
+    if (buffer != null) {
+      byte[] bytes = new byte[Math.min(length, PAGE_SIZE - offset)];
+      buffer.get(offset, bytes);
+      return new String(bytes).trim();
+    }
     return Convert.getStringValue(offset, data, length);
   }
 
@@ -127,7 +249,11 @@ public class Page implements GlobalConst {
    * Sets a string at the given page offset.
    */
   public void setStringValue(String value, int offset) {
-    Convert.setStringValue(value, offset, data);
+    if (buffer != null) {
+      buffer.put(offset, value.getBytes());
+    } else {
+      Convert.setStringValue(value, offset, data);
+    }
   }
 
 } // public class Page implements GlobalConst
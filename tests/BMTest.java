@@ -1,10 +1,19 @@
 package tests;
 
-import global.Convert;
+import bufmgr.BufferPoolStats;
+import bufmgr.BufMgr;
+import bufmgr.BufferRing;
+import bufmgr.PageGuard;
 import global.Minibase;
 import global.Page;
 import global.PageId;
 
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
 /**
  * Test suite for the bufmgr layer.
  */
@@ -14,21 +23,53 @@ class BMTest extends TestDriver {
   private static final String TEST_NAME = "buffer manager tests";
 
   /**
-   * Test application entry point; runs all tests.
+   * Test application entry point; runs all tests.  The replacement policy
+   * may be given as the first argument, and "off-heap" as the second.
    */
   public static void main(String argv[]) {
 
     // create a clean Minibase instance.  This requires pinning and unpinning
 	// the first page of the database.
     BMTest bmt = new BMTest();
+    if (argv.length > 0) {
+      bmt.BUF_POLICY = argv[0];
+    }
+    if (argv.length > 1) {
+      bmt.BUF_OFF_HEAP = argv[1].equalsIgnoreCase("off-heap");
+    }
     bmt.create_minibase();
 
     // run all the test cases
-    System.out.println("\n" + "Running " + TEST_NAME + "...");
+    System.out.println("\n" + "Running " + TEST_NAME + " with the "
+        + bmt.BUF_POLICY + " replacement policy"
+        + (bmt.BUF_OFF_HEAP ? " and an off-heap pool..." : "..."));
     boolean status = PASS;
     status &= bmt.test1();
     status &= bmt.test2();
     status &= bmt.test3();
+    status &= bmt.test4();
+    status &= bmt.test5();
+    status &= bmt.test6();
+    status &= bmt.test7();
+    status &= bmt.test8();
+    status &= bmt.test9();
+    status &= bmt.test10();
+    status &= bmt.test11();
+    status &= bmt.test12();
+    status &= bmt.test13();
+    status &= bmt.test14();
+    status &= bmt.test15();
+    status &= bmt.test16();
+    status &= bmt.test17();
+    status &= bmt.test18();
+    status &= bmt.test19();
+    status &= bmt.test20();
+    status &= bmt.test21();
+    status &= bmt.test22();
+    status &= bmt.test23();
+    status &= bmt.test24();
+    status &= bmt.test25();
+    status &= bmt.test26();
 
     // display the final results
     System.out.println();
@@ -92,7 +133,7 @@ class BMTest extends TestDriver {
       // unlikely that this bit pattern would show up there by
       // coincidence.
       int data = pid.pid + 99999;
-      Convert.setIntValue(data, 0, pg.getData());
+      pg.setIntValue(data, 0);
 
       try {
         Minibase.BufferManager.unpinPage(pid, UNPIN_DIRTY);
@@ -119,7 +160,7 @@ class BMTest extends TestDriver {
       }
 
       int data = 0;
-      data = Convert.getIntValue(0, pg.getData());
+      data = pg.getIntValue(0);
 
       if (status1 == PASS) {
         if (data != (pid.pid) + 99999) {
@@ -331,7 +372,7 @@ class BMTest extends TestDriver {
 
       // Copy the page number + 99999 onto it. 
       int data = pid.pid + 99999;
-      Convert.setIntValue(data, 0, pg.getData());
+      pg.setIntValue(data, 0);
 
       // Unpin odd numbered ones.
       if (curPageIndex %2 != 0 ) {
@@ -360,7 +401,7 @@ class BMTest extends TestDriver {
           e.printStackTrace();
           break;
         }
-        int data = Convert.getIntValue(0, pg.getData());
+        int data = pg.getIntValue(0);
         if (data != pid.pid + 99999) {
           status3 = FAIL;
           System.err.print("*** Read wrong data from page " + pid.pid + "\n");
@@ -402,4 +443,1735 @@ class BMTest extends TestDriver {
 
   } // protected boolean test3 ()
 
+  /**
+   * 
+   */
+  protected boolean test4() {
+
+    System.out.print("\n  Test 4 checks that dirty pages are written back lazily\n");
+
+    boolean status4 = PASS;
+    Page pg = new Page();
+    PageId pid = new PageId();
+
+    try {
+      pid = Minibase.BufferManager.newPage(pg, 1);
+      Minibase.BufferManager.unpinPage(pid, UNPIN_CLEAN);
+    } catch (Exception e) {
+      System.err.print("*** Could not allocate a new page\n");
+      e.printStackTrace();
+      return false;
+    }
+
+    System.out.print("  - Update a resident page several times\n");
+    int writes = Minibase.DiskManager.getWriteCount();
+    for (int i = 0; status4 == PASS && i < 10; i++) {
+      try {
+        Minibase.BufferManager.pinPage(pid, pg, PIN_DISKIO);
+        pg.setIntValue(pid.pid + i, 0);
+        Minibase.BufferManager.unpinPage(pid, UNPIN_DIRTY);
+      } catch (Exception e) {
+        status4 = FAIL;
+        System.err.print("*** Could not update page " + pid.pid + "\n");
+        e.printStackTrace();
+      }
+    }
+    if (status4 == PASS && Minibase.DiskManager.getWriteCount() != writes) {
+      status4 = FAIL;
+      System.err.print("*** Dirty unpins were written through to disk\n");
+    }
+
+    System.out.print("  - Flush the page and check it is written once\n");
+    if (status4 == PASS) {
+      Minibase.BufferManager.flushPage(pid);
+      Minibase.BufferManager.flushPage(pid);
+      if (Minibase.DiskManager.getWriteCount() != writes + 1) {
+        status4 = FAIL;
+        System.err.print("*** Expected one write, got "
+            + (Minibase.DiskManager.getWriteCount() - writes) + "\n");
+      }
+    }
+
+    Minibase.BufferManager.freePage(pid);
+
+    if (status4 == PASS)
+      System.out.print("  Test 4 completed successfully.\n");
+
+    return status4;
+
+  } // protected boolean test4 ()
+
+  /**
+   * Pins pages from several threads at once.
+   */
+  protected boolean test5() {
+
+    System.out.print("\n  Test 5 pins and unpins pages from several threads\n");
+
+    // Allocate more pages than there are frames, so the threads also evict
+    int numPages = 2 * Minibase.BufferManager.getNumFrames();
+    Page pg = new Page();
+    PageId firstPid;
+    try {
+      firstPid = Minibase.BufferManager.newPage(pg, numPages);
+    } catch (Exception e) {
+      System.err.print("*** Could not allocate " + numPages + " new pages\n");
+      e.printStackTrace();
+      return false;
+    }
+    Minibase.BufferManager.unpinPage(firstPid, UNPIN_CLEAN);
+
+    System.out.print("  - Write something on each one\n");
+    PageId pid = new PageId();
+    for (int i = 0; i < numPages; i++) {
+      pid.pid = firstPid.pid + i;
+      Minibase.BufferManager.pinPage(pid, pg, PIN_NOOP);
+      pg.setIntValue(pid.pid + 99999, 0);
+      Minibase.BufferManager.unpinPage(pid, UNPIN_DIRTY);
+    }
+
+    System.out.print("  - Read them back from 4 threads\n");
+    final int first = firstPid.pid;
+    final boolean[] failed = new boolean[1];
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      final int seed = t;
+      threads[t] = new Thread() {
+        public void run() {
+          java.util.Random random = new java.util.Random(seed);
+          Page page = new Page();
+          PageId id = new PageId();
+          for (int i = 0; i < 2000 && !failed[0]; i++) {
+            id.pid = first + random.nextInt(numPages);
+            try {
+              Minibase.BufferManager.pinPage(id, page, PIN_DISKIO);
+              int data = page.getIntValue(0);
+              Minibase.BufferManager.unpinPage(id, UNPIN_CLEAN);
+              if (data != id.pid + 99999) {
+                System.err.print("*** Read wrong data from page " + id.pid + "\n");
+                failed[0] = true;
+              }
+            } catch (Exception e) {
+              System.err.print("*** Could not pin page " + id.pid + "\n");
+              e.printStackTrace();
+              failed[0] = true;
+            }
+          }
+        }
+      };
+      threads[t].start();
+    }
+    for (int t = 0; t < threads.length; t++) {
+      try {
+        threads[t].join();
+      } catch (InterruptedException e) {
+        failed[0] = true;
+      }
+    }
+
+    boolean status5 = !failed[0];
+    if (status5 == PASS
+        && Minibase.BufferManager.getNumUnpinned() != Minibase.BufferManager.getNumFrames()) {
+      status5 = FAIL;
+      System.err.print("*** Pages were left pinned\n");
+    }
+
+    for (int i = 0; i < numPages; i++) {
+      pid.pid = firstPid.pid + i;
+      Minibase.BufferManager.freePage(pid);
+    }
+
+    if (status5 == PASS)
+      System.out.print("  Test 5 completed successfully.\n");
+
+    return status5;
+
+  } // protected boolean test5 ()
+
+  /**
+   * Checks that the content latches of a page exclude writers.
+   */
+  protected boolean test6() {
+
+    System.out.print("\n  Test 6 latches a page in shared and exclusive mode\n");
+
+    boolean status6 = PASS;
+    Page pg = new Page();
+    final PageId pid;
+    try {
+      pid = Minibase.BufferManager.newPage(pg, 1);
+    } catch (Exception e) {
+      System.err.print("*** Could not allocate a new page\n");
+      e.printStackTrace();
+      return false;
+    }
+    Minibase.BufferManager.unpinPage(pid, UNPIN_CLEAN);
+
+    System.out.print("  - Hold the shared latch twice at once\n");
+    Minibase.BufferManager.pinPage(pid, pg, PIN_DISKIO, LATCH_SHARED);
+    Minibase.BufferManager.pinPage(pid, pg, PIN_DISKIO, LATCH_SHARED);
+    Minibase.BufferManager.unpinPage(pid, UNPIN_CLEAN, LATCH_SHARED);
+    Minibase.BufferManager.unpinPage(pid, UNPIN_CLEAN, LATCH_SHARED);
+
+    System.out.print("  - Read the page while a writer holds it\n");
+    Minibase.BufferManager.pinPage(pid, pg, PIN_DISKIO, LATCH_EXCLUSIVE);
+    pg.setIntValue(1, 0);
+    final int[] seen = new int[1];
+    Thread reader = new Thread() {
+      public void run() {
+        Page page = new Page();
+        Minibase.BufferManager.pinPage(pid, page, PIN_DISKIO, LATCH_SHARED);
+        seen[0] = page.getIntValue(0);
+        Minibase.BufferManager.unpinPage(pid, UNPIN_CLEAN, LATCH_SHARED);
+      }
+    };
+    reader.start();
+    try {
+      Thread.sleep(100);
+    } catch (InterruptedException e) {
+    }
+    pg.setIntValue(2, 0);
+    Minibase.BufferManager.unpinPage(pid, UNPIN_DIRTY, LATCH_EXCLUSIVE);
+    try {
+      reader.join();
+    } catch (InterruptedException e) {
+    }
+    if (seen[0] != 2) {
+      status6 = FAIL;
+      System.err.print("*** Reader saw " + seen[0] + " before the writer was done\n");
+    }
+
+    System.out.print("  - Release a latch that is not held\n");
+    Minibase.BufferManager.pinPage(pid, pg, PIN_DISKIO);
+    try {
+      Minibase.BufferManager.unlatchPage(pid, LATCH_EXCLUSIVE);
+      status6 = FAIL;
+      System.err.print("*** Released a latch that was not held\n");
+    } catch (IllegalArgumentException e) {
+      System.out.print("  --> Failed as expected \n");
+    }
+    Minibase.BufferManager.unpinPage(pid, UNPIN_CLEAN);
+
+    Minibase.BufferManager.freePage(pid);
+
+    if (status6 == PASS)
+      System.out.print("  Test 6 completed successfully.\n");
+
+    return status6;
+
+  } // protected boolean test6 ()
+
+  /**
+   * Checks that the page cleaner leaves clean victims for misses.
+   */
+  protected boolean test7() {
+
+    System.out.print("\n  Test 7 writes dirty pages in the background\n");
+
+    boolean status7 = PASS;
+    int numPages = Minibase.BufferManager.getNumFrames();
+    Page pg = new Page();
+    PageId firstPid;
+    try {
+      firstPid = Minibase.BufferManager.newPage(pg, 2 * numPages);
+    } catch (Exception e) {
+      System.err.print("*** Could not allocate " + 2 * numPages + " new pages\n");
+      e.printStackTrace();
+      return false;
+    }
+    Minibase.BufferManager.unpinPage(firstPid, UNPIN_CLEAN);
+
+    System.out.print("  - Dirty a pool's worth of pages with the cleaner running\n");
+    Minibase.BufferManager.startCleaner(10000, 0.0, 0.1);
+    PageId pid = new PageId();
+    for (int i = 0; i < numPages; i++) {
+      pid.pid = firstPid.pid + i;
+      Minibase.BufferManager.pinPage(pid, pg, PIN_NOOP);
+      pg.setIntValue(pid.pid, 0);
+      Minibase.BufferManager.unpinPage(pid, UNPIN_DIRTY);
+    }
+    for (int i = 0; i < 200 && Minibase.BufferManager.getNumDirty() > 0; i++) {
+      try {
+        Thread.sleep(10);
+      } catch (InterruptedException e) {
+      }
+    }
+    Minibase.BufferManager.stopCleaner();
+    if (Minibase.BufferManager.getNumDirty() != 0) {
+      status7 = FAIL;
+      System.err.print("*** The cleaner left "
+          + Minibase.BufferManager.getNumDirty() + " dirty pages\n");
+    }
+
+    System.out.print("  - Evict them and check no victim was dirty\n");
+    long dirtyVictims = Minibase.BufferManager.getDirtyVictims();
+    for (int i = numPages; i < 2 * numPages; i++) {
+      pid.pid = firstPid.pid + i;
+      Minibase.BufferManager.pinPage(pid, pg, PIN_NOOP);
+      Minibase.BufferManager.unpinPage(pid, UNPIN_CLEAN);
+    }
+    if (Minibase.BufferManager.getDirtyVictims() != dirtyVictims) {
+      status7 = FAIL;
+      System.err.print("*** Misses had to write dirty victims\n");
+    }
+
+    System.out.print("  - Read the cleaned pages back\n");
+    for (int i = 0; status7 == PASS && i < numPages; i++) {
+      pid.pid = firstPid.pid + i;
+      Minibase.BufferManager.pinPage(pid, pg, PIN_DISKIO);
+      if (pg.getIntValue(0) != pid.pid) {
+        status7 = FAIL;
+        System.err.print("*** Read wrong data from page " + pid.pid + "\n");
+      }
+      Minibase.BufferManager.unpinPage(pid, UNPIN_CLEAN);
+    }
+
+    for (int i = 0; i < 2 * numPages; i++) {
+      pid.pid = firstPid.pid + i;
+      Minibase.BufferManager.freePage(pid);
+    }
+
+    if (status7 == PASS)
+      System.out.print("  Test 7 completed successfully.\n");
+
+    return status7;
+
+  } // protected boolean test7 ()
+
+  /**
+   * Checks that a sequential scan is read ahead.
+   */
+  protected boolean test8() {
+
+    System.out.print("\n  Test 8 reads ahead of a sequential scan\n");
+
+    boolean status8 = PASS;
+    int numPages = 2 * Minibase.BufferManager.getNumFrames();
+    Page pg = new Page();
+    PageId firstPid;
+    try {
+      firstPid = Minibase.BufferManager.newPage(pg, numPages);
+    } catch (Exception e) {
+      System.err.print("*** Could not allocate " + numPages + " new pages\n");
+      e.printStackTrace();
+      return false;
+    }
+    Minibase.BufferManager.unpinPage(firstPid, UNPIN_CLEAN);
+
+    // the later pages push the earlier ones out of the pool
+    PageId pid = new PageId();
+    for (int i = 0; i < numPages; i++) {
+      pid.pid = firstPid.pid + i;
+      Minibase.BufferManager.pinPage(pid, pg, PIN_NOOP);
+      pg.setIntValue(pid.pid, 0);
+      Minibase.BufferManager.unpinPage(pid, UNPIN_DIRTY);
+    }
+    Minibase.BufferManager.flushAllFrames();
+
+    System.out.print("  - Scan the pages with read-ahead on\n");
+    Minibase.BufferManager.startReadAhead(16);
+    long hits = Minibase.BufferManager.getPrefetchHits();
+    for (int i = 0; status8 == PASS && i < numPages / 2; i++) {
+      pid.pid = firstPid.pid + i;
+      Minibase.BufferManager.pinPage(pid, pg, PIN_DISKIO);
+      if (pg.getIntValue(0) != pid.pid) {
+        status8 = FAIL;
+        System.err.print("*** Read wrong data from page " + pid.pid + "\n");
+      }
+      Minibase.BufferManager.unpinPage(pid, UNPIN_CLEAN);
+      if (i == 8) {
+        // let the reader catch up, so the next page is surely prefetched
+        try {
+          Thread.sleep(200);
+        } catch (InterruptedException e) {
+        }
+      }
+    }
+    Minibase.BufferManager.stopReadAhead();
+    if (status8 == PASS && Minibase.BufferManager.getPrefetchHits() == hits) {
+      status8 = FAIL;
+      System.err.print("*** No page was read ahead\n");
+    }
+
+    for (int i = 0; i < numPages; i++) {
+      pid.pid = firstPid.pid + i;
+      Minibase.BufferManager.freePage(pid);
+    }
+
+    if (status8 == PASS)
+      System.out.print("  Test 8 completed successfully.\n");
+
+    return status8;
+
+  } // protected boolean test8 ()
+
+  /**
+   * Checks explicit prefetches and batch pins.
+   */
+  protected boolean test9() {
+
+    System.out.print("\n  Test 9 prefetches and pins pages in batches\n");
+
+    boolean status9 = PASS;
+    int numPages = 2 * Minibase.BufferManager.getNumFrames();
+    Page pg = new Page();
+    PageId firstPid;
+    try {
+      firstPid = Minibase.BufferManager.newPage(pg, numPages);
+    } catch (Exception e) {
+      System.err.print("*** Could not allocate " + numPages + " new pages\n");
+      e.printStackTrace();
+      return false;
+    }
+    Minibase.BufferManager.unpinPage(firstPid, UNPIN_CLEAN);
+
+    // the later pages push the earlier ones out of the pool
+    PageId pid = new PageId();
+    for (int i = 0; i < numPages; i++) {
+      pid.pid = firstPid.pid + i;
+      Minibase.BufferManager.pinPage(pid, pg, PIN_NOOP);
+      pg.setIntValue(pid.pid, 0);
+      Minibase.BufferManager.unpinPage(pid, UNPIN_DIRTY);
+    }
+    Minibase.BufferManager.flushAllFrames();
+
+    System.out.print("  - Prefetch a run and pin it\n");
+    Minibase.BufferManager.prefetch(firstPid, 10);
+    int reads = Minibase.DiskManager.getReadCount();
+    for (int i = 0; status9 == PASS && i < 10; i++) {
+      pid.pid = firstPid.pid + i;
+      Minibase.BufferManager.pinPage(pid, pg, PIN_DISKIO);
+      if (pg.getIntValue(0) != pid.pid) {
+        status9 = FAIL;
+        System.err.print("*** Read wrong data from page " + pid.pid + "\n");
+      }
+      Minibase.BufferManager.unpinPage(pid, UNPIN_CLEAN);
+    }
+    if (status9 == PASS && Minibase.DiskManager.getReadCount() != reads) {
+      status9 = FAIL;
+      System.err.print("*** The prefetched pages were read again\n");
+    }
+
+    System.out.print("  - Pin a batch of pages at once\n");
+    PageId[] ids = new PageId[10];
+    Page[] pages = new Page[ids.length];
+    for (int i = 0; i < ids.length; i++) {
+      // two runs, given out of order
+      ids[i] = new PageId(firstPid.pid + 20 + (i < 5 ? 10 + i : i));
+      pages[i] = new Page();
+    }
+    Minibase.BufferManager.pinPages(ids, pages);
+    for (int i = 0; i < ids.length; i++) {
+      if (status9 == PASS && pages[i].getIntValue(0) != ids[i].pid) {
+        status9 = FAIL;
+        System.err.print("*** Read wrong data from page " + ids[i].pid + "\n");
+      }
+      Minibase.BufferManager.unpinPage(ids[i], UNPIN_CLEAN);
+    }
+
+    for (int i = 0; i < numPages; i++) {
+      pid.pid = firstPid.pid + i;
+      Minibase.BufferManager.freePage(pid);
+    }
+
+    if (status9 == PASS)
+      System.out.print("  Test 9 completed successfully.\n");
+
+    return status9;
+
+  } // protected boolean test9 ()
+
+  /**
+   * Checks that a scan through a ring leaves the rest of the pool alone.
+   */
+  protected boolean test10() {
+
+    System.out.print("\n  Test 10 confines a large scan to a ring of frames\n");
+
+    boolean status10 = PASS;
+    int numHot = 10;
+    int numPages = 3 * Minibase.BufferManager.getNumFrames();
+    Page pg = new Page();
+    PageId hotPid, firstPid;
+    try {
+      hotPid = Minibase.BufferManager.newPage(pg, numHot);
+      Minibase.BufferManager.unpinPage(hotPid, UNPIN_CLEAN);
+      firstPid = Minibase.BufferManager.newPage(pg, numPages);
+      Minibase.BufferManager.unpinPage(firstPid, UNPIN_CLEAN);
+    } catch (Exception e) {
+      System.err.print("*** Could not allocate " + (numHot + numPages) + " new pages\n");
+      e.printStackTrace();
+      return false;
+    }
+
+    System.out.print("  - Load a table three times the size of the pool\n");
+    BufferRing ring = new BufferRing(8);
+    PageId pid = new PageId();
+    for (int i = 0; i < numPages; i++) {
+      pid.pid = firstPid.pid + i;
+      Minibase.BufferManager.pinPage(pid, pg, PIN_NOOP, ring);
+      pg.setIntValue(pid.pid, 0);
+      Minibase.BufferManager.unpinPage(pid, UNPIN_DIRTY);
+    }
+
+    System.out.print("  - Use a few hot pages, then scan the table\n");
+    for (int i = 0; i < numHot; i++) {
+      pid.pid = hotPid.pid + i;
+      Minibase.BufferManager.pinPage(pid, pg, PIN_DISKIO);
+      Minibase.BufferManager.unpinPage(pid, UNPIN_CLEAN);
+    }
+    for (int i = 0; status10 == PASS && i < numPages; i++) {
+      pid.pid = firstPid.pid + i;
+      Minibase.BufferManager.pinPage(pid, pg, PIN_DISKIO, ring);
+      if (pg.getIntValue(0) != pid.pid) {
+        status10 = FAIL;
+        System.err.print("*** Read wrong data from page " + pid.pid + "\n");
+      }
+      Minibase.BufferManager.unpinPage(pid, UNPIN_CLEAN);
+    }
+
+    System.out.print("  - Check the hot pages are still resident\n");
+    int reads = Minibase.DiskManager.getReadCount();
+    for (int i = 0; i < numHot; i++) {
+      pid.pid = hotPid.pid + i;
+      Minibase.BufferManager.pinPage(pid, pg, PIN_DISKIO);
+      Minibase.BufferManager.unpinPage(pid, UNPIN_CLEAN);
+    }
+    if (status10 == PASS && Minibase.DiskManager.getReadCount() != reads) {
+      status10 = FAIL;
+      System.err.print("*** The scan evicted "
+          + (Minibase.DiskManager.getReadCount() - reads) + " hot pages\n");
+    }
+
+    for (int i = 0; i < numHot; i++) {
+      pid.pid = hotPid.pid + i;
+      Minibase.BufferManager.freePage(pid);
+    }
+    for (int i = 0; i < numPages; i++) {
+      pid.pid = firstPid.pid + i;
+      Minibase.BufferManager.freePage(pid);
+    }
+
+    if (status10 == PASS)
+      System.out.print("  Test 10 completed successfully.\n");
+
+    return status10;
+
+  } // protected boolean test10 ()
+
+
+  /**
+   * Checks the buffer pool metrics and their MBean.
+   */
+  protected boolean test11() {
+
+    System.out.print("\n  Test 11 checks the buffer pool metrics\n");
+
+    boolean status11 = PASS;
+    int numPages = 2 * Minibase.BufferManager.getNumFrames();
+    Page pg = new Page();
+    PageId firstPid;
+    try {
+      firstPid = Minibase.BufferManager.newPage(pg, numPages);
+      Minibase.BufferManager.unpinPage(firstPid, UNPIN_CLEAN);
+    } catch (Exception e) {
+      System.err.print("*** Could not allocate " + numPages + " new pages\n");
+      e.printStackTrace();
+      return false;
+    }
+
+    System.out.print("  - Pin a page twice, then scan twice the pool\n");
+    BufferPoolStats before = Minibase.BufferManager.snapshot();
+    PageId pid = new PageId(firstPid.pid);
+    Minibase.BufferManager.pinPage(pid, pg, PIN_DISKIO);
+    Minibase.BufferManager.pinPage(pid, pg, PIN_DISKIO);
+    BufferPoolStats pinned = Minibase.BufferManager.snapshot().since(before);
+    if (pinned.getHits() + pinned.getMisses() != 2 || pinned.getHits() < 1
+        || pinned.getPinnedFrames() != 1
+        || Minibase.BufferManager.getNumUnpinned()
+            != Minibase.BufferManager.getNumFrames() - 1) {
+      status11 = FAIL;
+      System.err.print("*** Wrong metrics after two pins: " + pinned + "\n");
+    }
+    Minibase.BufferManager.unpinPage(pid, UNPIN_CLEAN);
+    Minibase.BufferManager.unpinPage(pid, UNPIN_DIRTY);
+
+    for (int i = 1; i < numPages; i++) {
+      pid.pid = firstPid.pid + i;
+      Minibase.BufferManager.pinPage(pid, pg, PIN_DISKIO);
+      Minibase.BufferManager.unpinPage(pid, UNPIN_CLEAN);
+    }
+    BufferPoolStats scan = Minibase.BufferManager.snapshot().since(before);
+    if (status11 == PASS && (scan.getMisses() < numPages - 1
+        || scan.getEvictions() < numPages - Minibase.BufferManager.getNumFrames()
+        || scan.getResidentFrames() != Minibase.BufferManager.getNumFrames()
+        || scan.getPinnedFrames() != 0)) {
+      status11 = FAIL;
+      System.err.print("*** Wrong metrics after the scan: " + scan + "\n");
+    }
+
+    System.out.print("  - Read the metrics through the MBean\n");
+    try {
+      Minibase.BufferManager.registerMBean("BMTest");
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName("minibase:type=BufferPool,name=\"BMTest\"");
+      long misses = (Long) server.getAttribute(name, "Misses");
+      if (status11 == PASS && misses != Minibase.BufferManager.getMetrics().getMisses()) {
+        status11 = FAIL;
+        System.err.print("*** The MBean reported " + misses + " misses\n");
+      }
+    } catch (Exception e) {
+      status11 = FAIL;
+      System.err.print("*** Could not read the buffer pool MBean\n");
+      e.printStackTrace();
+    } finally {
+      Minibase.BufferManager.unregisterMBean();
+    }
+
+    for (int i = 0; i < numPages; i++) {
+      pid.pid = firstPid.pid + i;
+      Minibase.BufferManager.freePage(pid);
+    }
+
+    if (status11 == PASS)
+      System.out.print("  Test 11 completed successfully.\n");
+
+    return status11;
+
+  } // protected boolean test11 ()
+
+
+  /**
+   * Grows and shrinks the buffer pool while pages are pinned.
+   */
+  protected boolean test12() {
+
+    System.out.print("\n  Test 12 resizes the buffer pool\n");
+
+    boolean status12 = PASS;
+    int numframes = Minibase.BufferManager.getNumFrames();
+    int numPages = 2 * numframes;
+    Page pg = new Page();
+    PageId firstPid;
+    try {
+      firstPid = Minibase.BufferManager.newPage(pg, numPages);
+      Minibase.BufferManager.unpinPage(firstPid, UNPIN_CLEAN);
+    } catch (Exception e) {
+      System.err.print("*** Could not allocate " + numPages + " new pages\n");
+      e.printStackTrace();
+      return false;
+    }
+
+    System.out.print("  - Double the pool and pin twice as many pages\n");
+    Minibase.BufferManager.resize(numPages);
+    Page[] pages = new Page[numPages];
+    PageId pid = new PageId();
+    try {
+      for (int i = 0; i < numPages; i++) {
+        pid.pid = firstPid.pid + i;
+        pages[i] = new Page();
+        Minibase.BufferManager.pinPage(pid, pages[i], PIN_DISKIO);
+        pages[i].setIntValue(pid.pid + 99999, 0);
+      }
+    } catch (Exception e) {
+      System.err.print("*** Could not pin " + numPages + " pages\n");
+      e.printStackTrace();
+      return false;
+    }
+    for (int i = 0; i < numPages - 1; i++) {
+      pid.pid = firstPid.pid + i;
+      Minibase.BufferManager.unpinPage(pid, UNPIN_DIRTY);
+    }
+
+    System.out.print("  - Shrink the pool back while one page stays pinned\n");
+    int size = Minibase.BufferManager.resize(numframes);
+    if (size < numframes || size != Minibase.BufferManager.getNumFrames()
+        || pages[numPages - 1].getIntValue(0) != firstPid.pid + numPages - 1 + 99999) {
+      status12 = FAIL;
+      System.err.print("*** Shrinking to " + size + " frames lost the pinned page\n");
+    }
+    pid.pid = firstPid.pid + numPages - 1;
+    Minibase.BufferManager.unpinPage(pid, UNPIN_DIRTY);
+    size = Minibase.BufferManager.resize(numframes);
+    if (status12 == PASS && size != numframes) {
+      status12 = FAIL;
+      System.err.print("*** The pool only shrank to " + size + " frames\n");
+    }
+
+    System.out.print("  - Read the pages back\n");
+    for (int i = 0; status12 == PASS && i < numPages; i++) {
+      pid.pid = firstPid.pid + i;
+      Minibase.BufferManager.pinPage(pid, pg, PIN_DISKIO);
+      if (pg.getIntValue(0) != pid.pid + 99999) {
+        status12 = FAIL;
+        System.err.print("*** Read wrong data from page " + pid.pid + "\n");
+      }
+      Minibase.BufferManager.unpinPage(pid, UNPIN_CLEAN);
+    }
+
+    for (int i = 0; i < numPages; i++) {
+      pid.pid = firstPid.pid + i;
+      Minibase.BufferManager.freePage(pid);
+    }
+
+    if (status12 == PASS)
+      System.out.print("  Test 12 completed successfully.\n");
+
+    return status12;
+
+  } // protected boolean test12 ()
+
+
+  /**
+   * Caches a file in a pool of its own.
+   */
+  protected boolean test13() {
+
+    System.out.print("\n  Test 13 assigns a file to a separate buffer pool\n");
+
+    boolean status13 = PASS;
+    int numPages = 3 * Minibase.BufferManager.getNumFrames();
+    BufMgr archive = Minibase.PoolManager.createPool("archive", 8, "LRU", false);
+    BufferPoolStats before = Minibase.BufferManager.snapshot();
+
+    System.out.print("  - Register the file and fill it through its pool\n");
+    Page pg = new Page();
+    PageId firstPid = archive.newPage(pg, numPages);
+    archive.unpinPage(firstPid, UNPIN_CLEAN);
+    Minibase.DiskManager.add_file_entry("archive", firstPid);
+    Minibase.PoolManager.assignFile("ARCHIVE", "archive");
+    BufMgr pool = Minibase.PoolManager.getFilePool("archive");
+    if (pool != archive) {
+      status13 = FAIL;
+      System.err.print("*** The file was not assigned to its pool\n");
+    }
+    PageId pid = new PageId();
+    for (int i = 0; i < numPages; i++) {
+      pid.pid = firstPid.pid + i;
+      pool.pinPage(pid, pg, PIN_DISKIO);
+      pg.setIntValue(pid.pid, 0);
+      pool.unpinPage(pid, UNPIN_DIRTY);
+    }
+    for (int i = 0; status13 == PASS && i < numPages; i++) {
+      pid.pid = firstPid.pid + i;
+      pool.pinPage(pid, pg, PIN_DISKIO);
+      if (pg.getIntValue(0) != pid.pid) {
+        status13 = FAIL;
+        System.err.print("*** Read wrong data from page " + pid.pid + "\n");
+      }
+      pool.unpinPage(pid, UNPIN_CLEAN);
+    }
+
+    System.out.print("  - Check the default pool was not used\n");
+    BufferPoolStats used = Minibase.BufferManager.snapshot().since(before);
+    if (status13 == PASS && (used.getHits() != 0 || used.getMisses() != 0)) {
+      status13 = FAIL;
+      System.err.print("*** The default pool was used: " + used + "\n");
+    }
+
+    System.out.print("  - Delete the file and drop its pool\n");
+    for (int i = 0; i < numPages; i++) {
+      pid.pid = firstPid.pid + i;
+      pool.freePage(pid);
+    }
+    Minibase.DiskManager.delete_file_entry("archive");
+    if (status13 == PASS && Minibase.PoolManager.getFilePool("archive")
+        != Minibase.BufferManager) {
+      status13 = FAIL;
+      System.err.print("*** The deleted file is still assigned\n");
+    }
+    Minibase.PoolManager.dropPool("archive");
+
+    if (status13 == PASS)
+      System.out.print("  Test 13 completed successfully.\n");
+
+    return status13;
+
+  } // protected boolean test13 ()
+
+
+  /**
+   * Takes checkpoints, on demand and in the background.
+   */
+  protected boolean test14() {
+
+    System.out.print("\n  Test 14 takes checkpoints while pages are pinned\n");
+
+    boolean status14 = PASS;
+    int numPages = Minibase.BufferManager.getNumFrames() / 2;
+    int firstCheckpoint = Minibase.DiskManager.getCheckpointId();
+    long beginTime = System.currentTimeMillis();
+
+    System.out.print("  - Dirty some pages and keep one pinned\n");
+    Page pg = new Page();
+    PageId firstPid = Minibase.BufferManager.newPage(pg, numPages);
+    PageId pid = new PageId();
+    for (int i = 0; i < numPages; i++) {
+      pid.pid = firstPid.pid + i;
+      if (i > 0) {
+        Minibase.BufferManager.pinPage(pid, pg, PIN_DISKIO);
+      }
+      pg.setIntValue(pid.pid, 0);
+      if (i > 0) {
+        Minibase.BufferManager.unpinPage(pid, UNPIN_DIRTY);
+      }
+    }
+
+    System.out.print("  - Take a checkpoint in small batches\n");
+    int id = Minibase.PoolManager.checkpoint(4, 0);
+    if (id != firstCheckpoint + 1
+        || Minibase.DiskManager.getCheckpointId() != id
+        || Minibase.DiskManager.getCheckpointTime() < beginTime) {
+      status14 = FAIL;
+      System.err.print("*** The checkpoint was not recorded\n");
+    }
+    // only the page still pinned may be dirty
+    if (status14 == PASS && Minibase.BufferManager.getNumDirty() > 1) {
+      status14 = FAIL;
+      System.err.print("*** Pages are still dirty after the checkpoint\n");
+    }
+    Minibase.BufferManager.unpinPage(firstPid, UNPIN_DIRTY);
+
+    System.out.print("  - Let the background checkpointer run\n");
+    Minibase.PoolManager.startCheckpointer(10, 4, 0);
+    long deadline = System.currentTimeMillis() + 10000;
+    while (Minibase.DiskManager.getCheckpointId() == id
+        && System.currentTimeMillis() < deadline) {
+      Thread.yield();
+    }
+    Minibase.PoolManager.stopCheckpointer();
+    if (status14 == PASS && Minibase.DiskManager.getCheckpointId() == id) {
+      status14 = FAIL;
+      System.err.print("*** The checkpointer did not take a checkpoint\n");
+    }
+
+    System.out.print("  - Read the pages back and free them\n");
+    for (int i = 0; i < numPages; i++) {
+      pid.pid = firstPid.pid + i;
+      Minibase.BufferManager.pinPage(pid, pg, PIN_DISKIO);
+      if (status14 == PASS && pg.getIntValue(0) != pid.pid) {
+        status14 = FAIL;
+        System.err.print("*** Read wrong data from page " + pid.pid + "\n");
+      }
+      Minibase.BufferManager.unpinPage(pid, UNPIN_CLEAN);
+      Minibase.BufferManager.freePage(pid);
+    }
+
+    if (status14 == PASS)
+      System.out.print("  Test 14 completed successfully.\n");
+
+    return status14;
+
+  } // protected boolean test14 ()
+
+
+  /**
+   * Waits for a frame when the pool is exhausted.
+   */
+  protected boolean test15() {
+
+    System.out.print("\n  Test 15 waits for a frame when all are pinned\n");
+
+    boolean status15 = PASS;
+    final BufMgr pool = Minibase.PoolManager.createPool("waiting", 3, "Clock", false);
+    int numPages = 4;
+
+    System.out.print("  - Pin a page in every frame\n");
+    Page pg = new Page();
+    final PageId firstPid = pool.newPage(pg, numPages);
+    PageId pid = new PageId();
+    for (int i = 1; i < 3; i++) {
+      pid.pid = firstPid.pid + i;
+      pool.pinPage(pid, pg, PIN_DISKIO);
+    }
+    PageId lastPid = new PageId(firstPid.pid + 3);
+
+    System.out.print("  - Try to pin another page without waiting\n");
+    try {
+      pool.pinPage(lastPid, pg, PIN_DISKIO);
+      status15 = FAIL;
+      System.err.print("*** Pinned a page in a full pool\n");
+    } catch (IllegalStateException exc) {
+      System.out.print("  --> Failed as expected \n");
+    }
+
+    System.out.print("  - Wait for a frame that is not released\n");
+    pool.setPinTimeout(50);
+    long start = System.currentTimeMillis();
+    try {
+      pool.pinPage(lastPid, pg, PIN_DISKIO);
+      status15 = FAIL;
+      System.err.print("*** Pinned a page in a full pool\n");
+    } catch (IllegalStateException exc) {
+      if (System.currentTimeMillis() - start < 50) {
+        status15 = FAIL;
+        System.err.print("*** The pin gave up before its timeout\n");
+      }
+    }
+
+    System.out.print("  - Wait for a frame another thread releases\n");
+    pool.setPinTimeout(10000);
+    Thread releaser = new Thread(() -> {
+      try {
+        Thread.sleep(100);
+      } catch (InterruptedException exc) {
+        Thread.currentThread().interrupt();
+      }
+      pool.unpinPage(firstPid, UNPIN_DIRTY);
+    });
+    releaser.start();
+    try {
+      pool.pinPage(lastPid, pg, PIN_DISKIO);
+    } catch (IllegalStateException exc) {
+      status15 = FAIL;
+      System.err.print("*** The pin did not get the released frame\n");
+    }
+    try {
+      releaser.join();
+    } catch (InterruptedException exc) {
+      Thread.currentThread().interrupt();
+    }
+
+    BufferPoolStats stats = pool.snapshot();
+    if (status15 == PASS && (stats.getFrameWaits() != 2 || stats.getFrameWaitTimeouts() != 1
+        || stats.getFrameWaiters() != 0 || stats.getFrameWaitMillis() < 50)) {
+      status15 = FAIL;
+      System.err.print("*** Wrong wait metrics: " + stats + "\n");
+    }
+
+    System.out.print("  - Unpin and free the pages\n");
+    for (int i = 1; i < numPages; i++) {
+      pid.pid = firstPid.pid + i;
+      pool.unpinPage(pid, UNPIN_CLEAN);
+    }
+    for (int i = 0; i < numPages; i++) {
+      pid.pid = firstPid.pid + i;
+      pool.freePage(pid);
+    }
+    Minibase.PoolManager.dropPool("waiting");
+
+    if (status15 == PASS)
+      System.out.print("  Test 15 completed successfully.\n");
+
+    return status15;
+
+  } // protected boolean test15 ()
+
+
+  /**
+   * Creates pages without reading them from disk.
+   */
+  protected boolean test16() {
+
+    System.out.print("\n  Test 16 creates a run of pages without disk reads\n");
+
+    boolean status16 = PASS;
+    BufMgr pool = Minibase.PoolManager.createPool("fresh", 16, "Clock", false);
+    int numPages = 8;
+
+    System.out.print("  - Allocate a run and cache all of it\n");
+    Page pg = new Page();
+    PageId firstPid = pool.newPage(pg, numPages, true);
+    for (int i = 0; i < PAGE_SIZE; i += 4) {
+      if (pg.getIntValue(i) != 0) {
+        status16 = FAIL;
+        System.err.print("*** The new page is not filled with zeros\n");
+        break;
+      }
+    }
+    pool.unpinPage(firstPid, UNPIN_CLEAN);
+    if (status16 == PASS && (pool.getNumDirty() != numPages
+        || pool.snapshot().getResidentFrames() != numPages)) {
+      status16 = FAIL;
+      System.err.print("*** The run was not cached dirty: " + pool.snapshot() + "\n");
+    }
+
+    System.out.print("  - Fill in every page\n");
+    PageId pid = new PageId();
+    for (int i = 0; i < numPages; i++) {
+      pid.pid = firstPid.pid + i;
+      pool.pinPage(pid, pg, PIN_DISKIO);
+      if (status16 == PASS && pg.getIntValue(PAGE_SIZE - 4) != 0) {
+        status16 = FAIL;
+        System.err.print("*** Page " + pid.pid + " is not filled with zeros\n");
+      }
+      pg.setIntValue(pid.pid, 0);
+      pool.unpinPage(pid, UNPIN_DIRTY);
+    }
+    // the space map may have been read by the allocation, but no new page
+    if (status16 == PASS && pool.snapshot().getMisses() != 1) {
+      status16 = FAIL;
+      System.err.print("*** New pages were read from disk\n");
+    }
+
+    System.out.print("  - Write the run and read it back\n");
+    pool.flushAllFrames();
+    int reads = Minibase.DiskManager.getReadCount();
+    pool.resize(1);
+    pool.resize(16);
+    for (int i = 0; i < numPages; i++) {
+      pid.pid = firstPid.pid + i;
+      pool.pinPage(pid, pg, PIN_DISKIO);
+      if (status16 == PASS && pg.getIntValue(0) != pid.pid) {
+        status16 = FAIL;
+        System.err.print("*** Read wrong data from page " + pid.pid + "\n");
+      }
+      pool.unpinPage(pid, UNPIN_CLEAN);
+      pool.freePage(pid);
+    }
+    if (status16 == PASS && Minibase.DiskManager.getReadCount() - reads < numPages - 1) {
+      status16 = FAIL;
+      System.err.print("*** The run was not read back from disk\n");
+    }
+    Minibase.PoolManager.dropPool("fresh");
+
+    if (status16 == PASS)
+      System.out.print("  Test 16 completed successfully.\n");
+
+    return status16;
+
+  } // protected boolean test16 ()
+
+
+  /**
+   * Reloads the resident pages when the database is opened again.
+   */
+  protected boolean test17() {
+
+    System.out.print("\n  Test 17 warms up the buffer pool after a restart\n");
+
+    boolean status17 = PASS;
+    int numPages = Minibase.BufferManager.getNumFrames() / 2;
+
+    System.out.print("  - Write some pages and keep them resident\n");
+    Page pg = new Page();
+    PageId firstPid = Minibase.BufferManager.newPage(pg, numPages);
+    Minibase.BufferManager.unpinPage(firstPid, UNPIN_CLEAN);
+    PageId pid = new PageId();
+    for (int i = 0; i < numPages; i++) {
+      pid.pid = firstPid.pid + i;
+      Minibase.BufferManager.pinPage(pid, pg, PIN_DISKIO);
+      pg.setIntValue(pid.pid, 0);
+      Minibase.BufferManager.unpinPage(pid, UNPIN_DIRTY);
+    }
+
+    System.out.print("  - Close the database and open it again\n");
+    Minibase.DiskManager.closeDB();
+    load_minibase();
+    long deadline = System.currentTimeMillis() + 10000;
+    while (Minibase.PoolManager.isWarmingUp() && System.currentTimeMillis() < deadline) {
+      Thread.yield();
+    }
+    if (Minibase.PoolManager.isWarmingUp()) {
+      status17 = FAIL;
+      System.err.print("*** The warm-up did not finish\n");
+    }
+
+    System.out.print("  - Pin the pages without reading them\n");
+    BufferPoolStats before = Minibase.BufferManager.snapshot();
+    for (int i = 0; status17 == PASS && i < numPages; i++) {
+      pid.pid = firstPid.pid + i;
+      Minibase.BufferManager.pinPage(pid, pg, PIN_DISKIO);
+      if (pg.getIntValue(0) != pid.pid) {
+        status17 = FAIL;
+        System.err.print("*** Read wrong data from page " + pid.pid + "\n");
+      }
+      Minibase.BufferManager.unpinPage(pid, UNPIN_CLEAN);
+    }
+    BufferPoolStats used = Minibase.BufferManager.snapshot().since(before);
+    if (status17 == PASS && (used.getMisses() != 0 || used.getPrefetchHits() != numPages)) {
+      status17 = FAIL;
+      System.err.print("*** The pages were not loaded: " + used + "\n");
+    }
+
+    System.out.print("  - Save the list again, empty and then full\n");
+    long[] saved = Minibase.DiskManager.read_resident_pages();
+    int allocated = Minibase.DiskManager.getAllocCount();
+    Minibase.DiskManager.write_resident_pages(new long[0]);
+    if (status17 == PASS && (Minibase.DiskManager.getAllocCount() != allocated
+        || Minibase.DiskManager.read_resident_pages().length != 0)) {
+      status17 = FAIL;
+      System.err.print("*** The empty list did not keep the run\n");
+    }
+    Minibase.DiskManager.write_resident_pages(saved);
+    if (status17 == PASS && (Minibase.DiskManager.getAllocCount() != allocated
+        || !Arrays.equals(Minibase.DiskManager.read_resident_pages(), saved))) {
+      status17 = FAIL;
+      System.err.print("*** The list was not saved in its run\n");
+    }
+
+    System.out.print("  - Free the pages\n");
+    for (int i = 0; i < numPages; i++) {
+      pid.pid = firstPid.pid + i;
+      Minibase.BufferManager.freePage(pid);
+    }
+
+    if (status17 == PASS)
+      System.out.print("  Test 17 completed successfully.\n");
+
+    return status17;
+
+  } // protected boolean test17 ()
+
+
+  /**
+   * Test 18: pins through page guards
+   */
+  protected boolean test18() {
+
+    System.out.print("\n  Test 18 pins pages through guards\n");
+
+    boolean status18 = PASS;
+    int numPages = 10;
+    int unpinned = Minibase.BufferManager.getNumUnpinned();
+
+    System.out.print("  - Allocate some pages\n");
+    Page pg = new Page();
+    PageId firstPid = Minibase.BufferManager.newPage(pg, numPages);
+    Minibase.BufferManager.unpinPage(firstPid, UNPIN_CLEAN);
+
+    System.out.print("  - Write the pages through guards\n");
+    PageId pid = new PageId();
+    for (int i = 0; i < numPages; i++) {
+      pid.pid = firstPid.pid + i;
+      try (PageGuard guard = Minibase.BufferManager.pinGuarded(pid, pg, PIN_DISKIO)) {
+        guard.getPage().setIntValue(pid.pid + 18, 0);
+        guard.markDirty();
+      }
+    }
+    if (Minibase.BufferManager.getNumUnpinned() != unpinned) {
+      status18 = FAIL;
+      System.err.print("*** Closing the guards did not unpin the pages\n");
+    }
+
+    System.out.print("  - Close a guard twice, then use it\n");
+    pid.pid = firstPid.pid;
+    PageGuard guard = Minibase.BufferManager.pinGuarded(pid, pg, PIN_DISKIO);
+    guard.close();
+    guard.close();
+    if (status18 == PASS && Minibase.BufferManager.getNumUnpinned() != unpinned) {
+      status18 = FAIL;
+      System.err.print("*** Closing a guard twice unpinned the page twice\n");
+    }
+    try {
+      guard.markDirty();
+      status18 = FAIL;
+      System.err.print("*** Marking a closed guard dirty was allowed\n");
+    } catch (IllegalStateException exc) {
+      System.out.print("  --> Failed as expected \n");
+    }
+
+    System.out.print("  - Flush the pages and read them through latched guards\n");
+    Minibase.BufferManager.flushAllFrames();
+    for (int i = 0; status18 == PASS && i < numPages; i++) {
+      pid.pid = firstPid.pid + i;
+      try (PageGuard latched = Minibase.BufferManager.pinGuarded(pid, pg, PIN_DISKIO, LATCH_SHARED)) {
+        if (latched.getPage().getIntValue(0) != pid.pid + 18) {
+          status18 = FAIL;
+          System.err.print("*** Read wrong data from page " + pid.pid + "\n");
+        }
+      }
+      try (PageGuard latched = Minibase.BufferManager.pinGuarded(pid, pg, PIN_DISKIO, LATCH_EXCLUSIVE)) {
+        latched.getPage().setIntValue(0, 0);
+        latched.markDirty();
+      }
+    }
+    if (status18 == PASS && Minibase.BufferManager.getNumUnpinned() != unpinned) {
+      status18 = FAIL;
+      System.err.print("*** Closing the latched guards did not unpin the pages\n");
+    }
+
+    System.out.print("  - Free the pages\n");
+    for (int i = 0; i < numPages; i++) {
+      pid.pid = firstPid.pid + i;
+      Minibase.BufferManager.freePage(pid);
+    }
+
+    if (status18 == PASS)
+      System.out.print("  Test 18 completed successfully.\n");
+
+    return status18;
+
+  } // protected boolean test18 ()
+
+
+  /**
+   * Test 19: optimistic reads
+   */
+  protected boolean test19() {
+
+    System.out.print("\n  Test 19 reads pages optimistically\n");
+
+    boolean status19 = PASS;
+    final int numPages = Minibase.BufferManager.getNumFrames() + 20;
+    final int last = PAGE_SIZE - 4;
+
+    System.out.print("  - Allocate more pages than there are frames\n");
+    Page pg = new Page();
+    PageId firstPid = Minibase.BufferManager.newPage(pg, numPages);
+    Minibase.BufferManager.unpinPage(firstPid, UNPIN_CLEAN);
+    final int first = firstPid.pid;
+
+    PageId pid = new PageId();
+    for (int i = 0; i < numPages; i++) {
+      pid.pid = first + i;
+      Minibase.BufferManager.pinPage(pid, pg, PIN_NOOP);
+      pg.setIntValue(0, 0);
+      pg.setIntValue(0, last);
+      Minibase.BufferManager.unpinPage(pid, UNPIN_DIRTY);
+    }
+
+    System.out.print("  - Read a resident page without pinning it\n");
+    pid.pid = first;
+    try (PageGuard guard = Minibase.BufferManager.pinGuarded(pid, pg, PIN_DISKIO, LATCH_EXCLUSIVE)) {
+      pg.setIntValue(19, 0);
+      pg.setIntValue(19, last);
+      guard.markDirty();
+    }
+    BufferPoolStats before = Minibase.BufferManager.snapshot();
+    int data = Minibase.BufferManager.readOptimistic(pid, new Page(), page -> page.getIntValue(last));
+    BufferPoolStats used = Minibase.BufferManager.snapshot().since(before);
+    if (data != 19) {
+      status19 = FAIL;
+      System.err.print("*** Read wrong data from page " + pid.pid + "\n");
+    }
+    if (status19 == PASS && (used.getOptimisticReads() != 1 || used.getHits() != 0)) {
+      status19 = FAIL;
+      System.err.print("*** The page was pinned: " + used + "\n");
+    }
+
+    System.out.print("  - Read while another thread writes and evicts the pages\n");
+    final boolean[] failed = new boolean[1];
+    final boolean[] done = new boolean[1];
+    Thread writer = new Thread() {
+      public void run() {
+        Page page = new Page();
+        PageId id = new PageId();
+        for (int i = 0; i < 20 * numPages && !failed[0]; i++) {
+          id.pid = first + i % numPages;
+          try (PageGuard guard = Minibase.BufferManager.pinGuarded(id, page, PIN_DISKIO, LATCH_EXCLUSIVE)) {
+            page.setIntValue(i, 0);
+            page.setIntValue(i, last);
+            guard.markDirty();
+          } catch (Exception e) {
+            System.err.print("*** Could not write page " + id.pid + "\n");
+            e.printStackTrace();
+            failed[0] = true;
+          }
+        }
+        done[0] = true;
+      }
+    };
+    Thread[] readers = new Thread[2];
+    for (int t = 0; t < readers.length; t++) {
+      final int seed = t;
+      readers[t] = new Thread() {
+        public void run() {
+          java.util.Random random = new java.util.Random(seed);
+          Page page = new Page();
+          PageId id = new PageId();
+          while (!done[0] && !failed[0]) {
+            id.pid = first + random.nextInt(numPages);
+            try {
+              boolean torn = Minibase.BufferManager.readOptimistic(id, page,
+                  p -> p.getIntValue(0) != p.getIntValue(last));
+              if (torn) {
+                System.err.print("*** Saw page " + id.pid + " half written\n");
+                failed[0] = true;
+              }
+            } catch (Exception e) {
+              System.err.print("*** Could not read page " + id.pid + "\n");
+              e.printStackTrace();
+              failed[0] = true;
+            }
+          }
+        }
+      };
+      readers[t].start();
+    }
+    writer.start();
+    try {
+      writer.join();
+      for (int t = 0; t < readers.length; t++) {
+        readers[t].join();
+      }
+    } catch (InterruptedException e) {
+      failed[0] = true;
+    }
+    if (failed[0]) {
+      status19 = FAIL;
+    }
+    if (status19 == PASS
+        && Minibase.BufferManager.getNumUnpinned() != Minibase.BufferManager.getNumFrames()) {
+      status19 = FAIL;
+      System.err.print("*** Pages were left pinned\n");
+    }
+
+    System.out.print("  - Free the pages\n");
+    for (int i = 0; i < numPages; i++) {
+      pid.pid = first + i;
+      Minibase.BufferManager.freePage(pid);
+    }
+
+    if (status19 == PASS)
+      System.out.print("  Test 19 completed successfully.\n");
+
+    return status19;
+
+  } // protected boolean test19 ()
+
+
+  /**
+   * Test 20: compressed cache of evicted pages
+   */
+  protected boolean test20() {
+
+    System.out.print("\n  Test 20 serves misses from the compressed cache\n");
+
+    boolean status20 = PASS;
+    int numPages = Minibase.BufferManager.getNumFrames() + 10;
+    Minibase.BufferManager.setCompressedCache(numPages * PAGE_SIZE);
+
+    System.out.print("  - Write more pages than there are frames\n");
+    Page pg = new Page();
+    PageId firstPid = Minibase.BufferManager.newPage(pg, numPages);
+    Minibase.BufferManager.unpinPage(firstPid, UNPIN_CLEAN);
+    PageId pid = new PageId();
+    for (int i = 0; i < numPages; i++) {
+      pid.pid = firstPid.pid + i;
+      Minibase.BufferManager.pinPage(pid, pg, PIN_NOOP);
+      pg.clear();
+      pg.setIntValue(pid.pid + 20, 0);
+      pg.setIntValue(pid.pid + 20, PAGE_SIZE - 4);
+      Minibase.BufferManager.unpinPage(pid, UNPIN_DIRTY);
+    }
+
+    System.out.print("  - Read them back without reading the disk\n");
+    BufferPoolStats before = Minibase.BufferManager.snapshot();
+    int reads = Minibase.DiskManager.getReadCount();
+    for (int i = 0; status20 == PASS && i < numPages; i++) {
+      pid.pid = firstPid.pid + i;
+      Minibase.BufferManager.pinPage(pid, pg, PIN_DISKIO);
+      if (pg.getIntValue(0) != pid.pid + 20 || pg.getIntValue(PAGE_SIZE - 4) != pid.pid + 20) {
+        status20 = FAIL;
+        System.err.print("*** Read wrong data from page " + pid.pid + "\n");
+      }
+      Minibase.BufferManager.unpinPage(pid, UNPIN_CLEAN);
+    }
+    BufferPoolStats used = Minibase.BufferManager.snapshot().since(before);
+    if (status20 == PASS && (Minibase.DiskManager.getReadCount() != reads
+        || used.getMisses() == 0 || used.getCompressedHits() != used.getMisses())) {
+      status20 = FAIL;
+      System.err.print("*** The misses were not served from the cache: " + used + "\n");
+    }
+
+    System.out.print("  - Drop the cache\n");
+    Minibase.BufferManager.setCompressedCache(0);
+    if (status20 == PASS && Minibase.BufferManager.snapshot().getCompressedBytes() != 0) {
+      status20 = FAIL;
+      System.err.print("*** The cache was not emptied\n");
+    }
+
+    System.out.print("  - Free the pages\n");
+    for (int i = 0; i < numPages; i++) {
+      pid.pid = firstPid.pid + i;
+      Minibase.BufferManager.freePage(pid);
+    }
+
+    if (status20 == PASS)
+      System.out.print("  Test 20 completed successfully.\n");
+
+    return status20;
+
+  } // protected boolean test20 ()
+
+
+  /**
+   * Test 21: new pages in a full pool
+   */
+  protected boolean test21() {
+
+    System.out.print("\n  Test 21 allocates pages while all frames are pinned\n");
+
+    boolean status21 = PASS;
+    BufMgr pool = Minibase.PoolManager.createPool("full", 3, "Clock", false);
+    int numPages = 3;
+
+    System.out.print("  - Pin a page in every frame\n");
+    Page pg = new Page();
+    PageId firstPid = pool.newPage(pg, numPages);
+    PageId pid = new PageId();
+    for (int i = 1; i < numPages; i++) {
+      pid.pid = firstPid.pid + i;
+      pool.pinPage(pid, pg, PIN_DISKIO);
+    }
+
+    System.out.print("  - Try to allocate a run of new pages\n");
+    int allocated = Minibase.DiskManager.getAllocCount();
+    try {
+      pool.newPage(pg, 5);
+      status21 = FAIL;
+      System.err.print("*** Pinned a new page in a full pool\n");
+    } catch (IllegalStateException exc) {
+      System.out.print("  --> Failed as expected \n");
+    }
+    if (Minibase.DiskManager.getAllocCount() != allocated) {
+      status21 = FAIL;
+      System.err.print("*** The run was left allocated\n");
+    }
+
+    System.out.print("  - Unpin and free the pages\n");
+    for (int i = 0; i < numPages; i++) {
+      pid.pid = firstPid.pid + i;
+      pool.unpinPage(pid, UNPIN_CLEAN);
+      pool.freePage(pid);
+    }
+    Minibase.PoolManager.dropPool("full");
+
+    if (status21 == PASS)
+      System.out.print("  Test 21 completed successfully.\n");
+
+    return status21;
+
+  } // protected boolean test21 ()
+
+
+  /**
+   * Test 22: disk I/O of an interrupted thread
+   */
+  protected boolean test22() {
+
+    System.out.print("\n  Test 22 flushes and reads pages from an interrupted thread\n");
+
+    boolean status22 = PASS;
+    int numPages = 10;
+
+    System.out.print("  - Write some pages\n");
+    Page pg = new Page();
+    PageId firstPid = Minibase.BufferManager.newPage(pg, numPages);
+    Minibase.BufferManager.unpinPage(firstPid, UNPIN_CLEAN);
+    PageId pid = new PageId();
+    for (int i = 0; i < numPages; i++) {
+      pid.pid = firstPid.pid + i;
+      Minibase.BufferManager.pinPage(pid, pg, PIN_NOOP);
+      pg.setIntValue(pid.pid + 22, 0);
+      Minibase.BufferManager.unpinPage(pid, UNPIN_DIRTY);
+    }
+
+    System.out.print("  - Flush and read them back with the interrupt status set\n");
+    Thread.currentThread().interrupt();
+    try {
+      Minibase.BufferManager.flushAllFrames();
+      for (int i = 0; status22 == PASS && i < numPages; i++) {
+        pid.pid = firstPid.pid + i;
+        Minibase.DiskManager.read_page(pid, pg);
+        if (pg.getIntValue(0) != pid.pid + 22) {
+          status22 = FAIL;
+          System.err.print("*** Read wrong data from page " + pid.pid + "\n");
+        }
+      }
+    } finally {
+      if (!Thread.interrupted()) {
+        status22 = FAIL;
+        System.err.print("*** The interrupt status was cleared\n");
+      }
+    }
+
+    System.out.print("  - Free the pages\n");
+    for (int i = 0; i < numPages; i++) {
+      pid.pid = firstPid.pid + i;
+      Minibase.BufferManager.freePage(pid);
+    }
+
+    if (status22 == PASS)
+      System.out.print("  Test 22 completed successfully.\n");
+
+    return status22;
+
+  } // protected boolean test22 ()
+
+
+  /**
+   * Test 23: hits and misses of a batch pin
+   */
+  protected boolean test23() {
+
+    System.out.print("\n  Test 23 counts the hits and misses of a batch pin\n");
+
+    boolean status23 = PASS;
+    int numPages = 10;
+    int resident = 3;
+
+    System.out.print("  - Write some pages\n");
+    Page pg = new Page();
+    PageId firstPid = Minibase.BufferManager.newPage(pg, numPages);
+    Minibase.BufferManager.unpinPage(firstPid, UNPIN_CLEAN);
+    PageId pid = new PageId();
+    for (int i = 0; i < numPages; i++) {
+      pid.pid = firstPid.pid + i;
+      Minibase.BufferManager.pinPage(pid, pg, PIN_NOOP);
+      pg.setIntValue(pid.pid, 0);
+      Minibase.BufferManager.unpinPage(pid, UNPIN_DIRTY);
+    }
+    Minibase.BufferManager.flushAllFrames();
+
+    System.out.print("  - Read a few of them into a new pool\n");
+    BufMgr pool = Minibase.PoolManager.createPool("batch", 2 * numPages, "Clock", false);
+    for (int i = 0; i < resident; i++) {
+      pid.pid = firstPid.pid + i;
+      pool.pinPage(pid, pg, PIN_DISKIO);
+      pool.unpinPage(pid, UNPIN_CLEAN);
+    }
+
+    System.out.print("  - Pin all of them at once\n");
+    BufferPoolStats before = pool.snapshot();
+    PageId[] ids = new PageId[numPages];
+    Page[] pages = new Page[numPages];
+    for (int i = 0; i < numPages; i++) {
+      ids[i] = new PageId(firstPid.pid + i);
+      pages[i] = new Page();
+    }
+    pool.pinPages(ids, pages);
+    BufferPoolStats used = pool.snapshot().since(before);
+    for (int i = 0; i < numPages; i++) {
+      if (status23 == PASS && pages[i].getIntValue(0) != ids[i].pid) {
+        status23 = FAIL;
+        System.err.print("*** Read wrong data from page " + ids[i].pid + "\n");
+      }
+      pool.unpinPage(ids[i], UNPIN_CLEAN);
+    }
+    if (status23 == PASS && (used.getHits() != resident
+        || used.getMisses() != numPages - resident)) {
+      status23 = FAIL;
+      System.err.print("*** Wrong hits or misses: " + used + "\n");
+    }
+
+    System.out.print("  - Pin more of them at once than the pool holds\n");
+    BufMgr small = Minibase.PoolManager.createPool("small", numPages / 2, "Clock", false);
+    before = small.snapshot();
+    try {
+      small.pinPages(ids, pages);
+      status23 = FAIL;
+      System.err.print("*** Pinned more pages than the pool holds\n");
+    } catch (IllegalStateException exc) {
+      System.out.print("  --> Failed as expected \n");
+    }
+    used = small.snapshot().since(before);
+    if (status23 == PASS && (used.getHits() < 0
+        || used.getHits() + used.getMisses() > numPages / 2 + 1)) {
+      status23 = FAIL;
+      System.err.print("*** Wrong hits or misses: " + used + "\n");
+    }
+
+    System.out.print("  - Drop the pools and free the pages\n");
+    Minibase.PoolManager.dropPool("small");
+    Minibase.PoolManager.dropPool("batch");
+    for (int i = 0; i < numPages; i++) {
+      pid.pid = firstPid.pid + i;
+      Minibase.BufferManager.freePage(pid);
+    }
+
+    if (status23 == PASS)
+      System.out.print("  Test 23 completed successfully.\n");
+
+    return status23;
+
+  } // protected boolean test23 ()
+
+
+  /**
+   * Test 24: moving a file between pools
+   */
+  protected boolean test24() {
+
+    System.out.print("\n  Test 24 moves a file to another pool and back\n");
+
+    boolean status24 = PASS;
+    int numPages = 10;
+    BufMgr pool = Minibase.PoolManager.createPool("moved", numPages, "LRU", false);
+
+    System.out.print("  - Register a file and fill it through the default pool\n");
+    Page pg = new Page();
+    PageId firstPid = Minibase.BufferManager.newPage(pg, numPages);
+    Minibase.BufferManager.unpinPage(firstPid, UNPIN_CLEAN);
+    Minibase.DiskManager.add_file_entry("relocated", firstPid);
+    PageId pid = new PageId();
+    for (int i = 0; i < numPages; i++) {
+      pid.pid = firstPid.pid + i;
+      Minibase.BufferManager.pinPage(pid, pg, PIN_NOOP);
+      pg.setIntValue(pid.pid, 0);
+      Minibase.BufferManager.unpinPage(pid, UNPIN_DIRTY);
+    }
+
+    System.out.print("  - Assign it to a pool while warming up, and change it there\n");
+    Minibase.PoolManager.saveResidentPages();
+    Minibase.PoolManager.startWarmUp();
+    Minibase.PoolManager.assignFile("relocated", "moved");
+    if (Minibase.PoolManager.isWarmingUp()) {
+      status24 = FAIL;
+      System.err.print("*** The warm-up kept loading the pool the file left\n");
+    }
+    for (int i = 0; i < numPages; i++) {
+      pid.pid = firstPid.pid + i;
+      pool.pinPage(pid, pg, PIN_DISKIO);
+      if (status24 == PASS && pg.getIntValue(0) != pid.pid) {
+        status24 = FAIL;
+        System.err.print("*** Read wrong data from page " + pid.pid + "\n");
+      }
+      pg.setIntValue(-pid.pid, 0);
+      pool.unpinPage(pid, UNPIN_DIRTY);
+    }
+
+    System.out.print("  - Return it to the default pool and read it there\n");
+    Minibase.PoolManager.unassignFile("relocated");
+    for (int i = 0; i < numPages; i++) {
+      pid.pid = firstPid.pid + i;
+      Minibase.BufferManager.pinPage(pid, pg, PIN_DISKIO);
+      if (status24 == PASS && pg.getIntValue(0) != -pid.pid) {
+        status24 = FAIL;
+        System.err.print("*** Read a stale copy of page " + pid.pid + "\n");
+      }
+      Minibase.BufferManager.unpinPage(pid, UNPIN_CLEAN);
+    }
+    if (status24 == PASS && pool.snapshot().getResidentFrames() != 0) {
+      status24 = FAIL;
+      System.err.print("*** The pool it left still holds pages\n");
+    }
+
+    System.out.print("  - Delete the file and drop the pool\n");
+    for (int i = 0; i < numPages; i++) {
+      pid.pid = firstPid.pid + i;
+      Minibase.BufferManager.freePage(pid);
+    }
+    Minibase.DiskManager.delete_file_entry("relocated");
+    Minibase.PoolManager.dropPool("moved");
+
+    if (status24 == PASS)
+      System.out.print("  Test 24 completed successfully.\n");
+
+    return status24;
+
+  } // protected boolean test24 ()
+
+
+  /**
+   * Test 25: prefetch of a run longer than one disk request
+   */
+  protected boolean test25() {
+
+    System.out.print("\n  Test 25 prefetches a long run of pages\n");
+
+    boolean status25 = PASS;
+    int numPages = 150;
+    BufMgr pool = Minibase.PoolManager.createPool("long", 2 * numPages, "Clock", false);
+
+    System.out.print("  - Write a long run of pages\n");
+    Page pg = new Page();
+    PageId firstPid = pool.newPage(pg, numPages);
+    pool.unpinPage(firstPid, UNPIN_CLEAN);
+    PageId pid = new PageId();
+    for (int i = 0; i < numPages; i++) {
+      pid.pid = firstPid.pid + i;
+      pool.pinPage(pid, pg, PIN_NOOP);
+      pg.setIntValue(pid.pid, 0);
+      pool.unpinPage(pid, UNPIN_DIRTY);
+    }
+
+    System.out.print("  - Prefetch them into an empty pool\n");
+    Minibase.PoolManager.dropPool("long");
+    pool = Minibase.PoolManager.createPool("long", 2 * numPages, "Clock", false);
+    pool.prefetch(firstPid, numPages);
+
+    System.out.print("  - Pin one from another thread\n");
+    BufMgr target = pool;
+    Thread other = new Thread(() -> {
+      Page page = new Page();
+      target.pinPage(firstPid, page, PIN_DISKIO);
+      target.unpinPage(firstPid, UNPIN_CLEAN);
+    });
+    other.start();
+    try {
+      other.join(10000);
+    } catch (InterruptedException exc) {
+      Thread.currentThread().interrupt();
+    }
+    if (other.isAlive()) {
+      status25 = FAIL;
+      System.err.print("*** The prefetch left a stripe latched\n");
+    }
+
+    System.out.print("  - Pin them without reading them\n");
+    BufferPoolStats before = pool.snapshot();
+    for (int i = 0; status25 == PASS && i < numPages; i++) {
+      pid.pid = firstPid.pid + i;
+      pool.pinPage(pid, pg, PIN_DISKIO);
+      if (pg.getIntValue(0) != pid.pid) {
+        status25 = FAIL;
+        System.err.print("*** Read wrong data from page " + pid.pid + "\n");
+      }
+      pool.unpinPage(pid, UNPIN_CLEAN);
+    }
+    BufferPoolStats used = pool.snapshot().since(before);
+    if (status25 == PASS && used.getMisses() != 0) {
+      status25 = FAIL;
+      System.err.print("*** The pages were not all prefetched: " + used + "\n");
+    }
+
+    System.out.print("  - Free the pages and drop the pool\n");
+    for (int i = 0; i < numPages; i++) {
+      pid.pid = firstPid.pid + i;
+      pool.freePage(pid);
+    }
+    Minibase.PoolManager.dropPool("long");
+
+    if (status25 == PASS)
+      System.out.print("  Test 25 completed successfully.\n");
+
+    return status25;
+
+  } // protected boolean test25 ()
+
+
+  /**
+   * Test 26: disk I/O of a run longer than the staging buffer
+   */
+  protected boolean test26() {
+
+    System.out.print("\n  Test 26 writes and reads a long run of pages directly\n");
+
+    boolean status26 = PASS;
+    int numPages = 150;
+
+    System.out.print("  - Write a long run of heap and off-heap pages\n");
+    PageId firstPid = Minibase.DiskManager.allocate_page(numPages);
+    Page[] run = new Page[numPages];
+    for (int i = 0; i < numPages; i++) {
+      run[i] = (i % 2 == 0) ? new Page() : new Page(ByteBuffer.allocateDirect(PAGE_SIZE));
+      run[i].setIntValue(firstPid.pid + i, 0);
+      run[i].setIntValue(-i, PAGE_SIZE - 4);
+    }
+    Minibase.DiskManager.write_pages(firstPid, run);
+
+    System.out.print("  - Read it back the other way round\n");
+    for (int i = 0; i < numPages; i++) {
+      run[i] = (i % 2 == 0) ? new Page(ByteBuffer.allocateDirect(PAGE_SIZE)) : new Page();
+    }
+    Minibase.DiskManager.read_pages(firstPid, run);
+    for (int i = 0; status26 == PASS && i < numPages; i++) {
+      if (run[i].getIntValue(0) != firstPid.pid + i
+          || run[i].getIntValue(PAGE_SIZE - 4) != -i) {
+        status26 = FAIL;
+        System.err.print("*** Read wrong data from page " + (firstPid.pid + i) + "\n");
+      }
+    }
+
+    Minibase.DiskManager.deallocate_page(firstPid, numPages);
+
+    if (status26 == PASS)
+      System.out.print("  Test 26 completed successfully.\n");
+
+    return status26;
+
+  } // protected boolean test26 ()
+
 } // class BMTest extends TestDriver
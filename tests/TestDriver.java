@@ -30,6 +30,12 @@ class TestDriver implements GlobalConst {
   /** Default buffer pool size (in pages) */
   protected int BUF_SIZE = 100;
 
+  /** Default buffer pool replacement policy */
+  protected String BUF_POLICY = "Clock";
+
+  /** Whether the buffer pool is held outside the Java heap */
+  protected boolean BUF_OFF_HEAP = false;
+
   // --------------------------------------------------------------------------
 
   /** Random generator; use the same seed to make tests deterministic. */
@@ -72,7 +78,7 @@ class TestDriver implements GlobalConst {
    */
   protected void create_minibase() {
     System.out.println("Creating database...\n");
-    new Minibase(DB_PATH, DB_SIZE, BUF_SIZE, false);
+    new Minibase(DB_PATH, DB_SIZE, BUF_SIZE, BUF_POLICY, BUF_OFF_HEAP, false);
   }
 
   /**
@@ -80,7 +86,7 @@ class TestDriver implements GlobalConst {
    */
   protected void load_minibase() {
     System.out.println("Loading database...\n" );
-    new Minibase(DB_PATH, DB_SIZE, BUF_SIZE, true);
+    new Minibase(DB_PATH, DB_SIZE, BUF_SIZE, BUF_POLICY, BUF_OFF_HEAP, true);
   }
 
   // --------------------------------------------------------------------------
@@ -110,7 +116,7 @@ class TestDriver implements GlobalConst {
     data.desc = desc;
 
     // save the counts (in correct order)
-    Minibase.BufferManager.flushAllFrames();
+    Minibase.PoolManager.flushAllPools();
     data.reads = Minibase.DiskManager.getReadCount();
     data.writes = Minibase.DiskManager.getWriteCount();
     data.allocs = Minibase.DiskManager.getAllocCount();
@@ -125,7 +131,7 @@ class TestDriver implements GlobalConst {
 
     CountData data = counts.get(counts.size() - 1);
     System.out.println();
-    Minibase.BufferManager.flushAllFrames();
+    Minibase.PoolManager.flushAllPools();
     System.out.println("  *** Number of reads:  "
         + (Minibase.DiskManager.getReadCount() - data.reads));
     System.out.println("  *** Number of writes: "